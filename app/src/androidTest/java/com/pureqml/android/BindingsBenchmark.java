@@ -0,0 +1,111 @@
+package com.pureqml.android;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Function;
+import com.eclipsesource.v8.V8Object;
+import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.Element;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+//calls/s of prototype methods through typed dispatchers and through reflective wrappers, same object, same script
+@RunWith(AndroidJUnit4.class)
+public class BindingsBenchmark {
+    private static final int Calls = 100000;
+    private static final int Rounds = 5;
+
+    private TestEnvironment _env;
+    private V8              _v8;
+    private V8Object        _typedPrototype;
+    private V8Object        _reflectivePrototype;
+    private V8Object        _typed;
+    private V8Object        _reflective;
+
+    private V8Object wrap(BaseObject object, V8Object prototype) {
+        V8Object self = new V8Object(_v8);
+        self.add(Wrapper.UNIQUE_ID_KEY, object.getObjectId());
+        self.setPrototype(prototype);
+        return self;
+    }
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _v8 = V8.createV8Runtime();
+        _env.runtime = _v8;
+
+        _typedPrototype = new V8Object(_v8);
+        Wrapper.generatePrototype(_env, _v8, _typedPrototype, Element.class);
+        _reflectivePrototype = new V8Object(_v8);
+        for(Method method : Element.class.getMethods()) {
+            if (Wrapper.isExported(Element.class, method))
+                _reflectivePrototype.registerJavaMethod(Wrapper.wrapMethod(_env, method), method.getName());
+        }
+
+        Element element = new Element(_env);
+        _env.putObject(element.getObjectId(), element);
+        _typed = wrap(element, _typedPrototype);
+        _reflective = wrap(element, _reflectivePrototype);
+    }
+
+    @After
+    public void tearDown() {
+        _typed.close();
+        _reflective.close();
+        _typedPrototype.close();
+        _reflectivePrototype.close();
+        _v8.release(false);
+    }
+
+    //best of Rounds, ns per Calls calls
+    private long measure(V8Function loop, V8Object self) {
+        V8Array args = new V8Array(_v8).push(self).push(Calls);
+        try {
+            long best = Long.MAX_VALUE;
+            for(int round = 0; round < Rounds; ++round) { //first rounds are warm-up
+                long start = System.nanoTime();
+                loop.call(null, args);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        } finally {
+            args.close();
+        }
+    }
+
+    private void compare(String call) {
+        V8Function loop = (V8Function)_v8.executeObjectScript("(function(self, n) { for(var i = 0; i < n; ++i) " + call + " })");
+        try {
+            long reflective = measure(loop, _reflective);
+            long typed = measure(loop, _typed);
+            System.out.println(String.format(Locale.US, "%s: typed %.0f K/s, reflective %.0f K/s, x%.2f",
+                    call, Calls * 1e6 / typed, Calls * 1e6 / reflective, (double)reflective / typed));
+        } finally {
+            loop.close();
+        }
+    }
+
+    @Test
+    public void noArguments() {
+        compare("self.getScrollX()");
+    }
+
+    @Test
+    public void stringArgument() {
+        compare("self.addClass('item')");
+    }
+
+    @Test
+    public void arrayArgument() {
+        compare("self.style('cursor', 'pointer')");
+    }
+}
@@ -0,0 +1,242 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.eclipsesource.v8.JavaCallback;
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Function;
+import com.eclipsesource.v8.V8Object;
+import com.eclipsesource.v8.V8ScriptExecutionException;
+import com.eclipsesource.v8.V8Value;
+import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.Element;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//typed dispatchers must convert arguments and return values exactly like reflective wrappers they replace
+@RunWith(AndroidJUnit4.class)
+public class BindingsTest {
+    //records calls with converted arguments, runtime objects are recorded by name
+    public static class RecordingElement extends Element {
+        final String        name;
+        final List<String>  calls = new ArrayList<>();
+
+        public RecordingElement(IExecutionEnvironment env, String name) {
+            super(env);
+            this.name = name;
+        }
+
+        private static String describe(Object value) {
+            if (value instanceof RecordingElement)
+                return ((RecordingElement)value).name;
+            else if (value instanceof V8Function)
+                return "function";
+            else
+                return String.valueOf(value);
+        }
+
+        private void record(String method, Object ... args) {
+            StringBuilder call = new StringBuilder(method);
+            for(Object arg : args)
+                call.append(' ').append(describe(arg));
+            calls.add(call.toString());
+        }
+
+        @Override public void append(BaseObject child)              { record("append", child); }
+        @Override public void prepend(BaseObject child)             { record("prepend", child); }
+        @Override public void remove()                              { record("remove"); }
+        @Override public void setAttribute(String name, String value) { record("setAttribute", name, value); }
+        @Override public void focus()                               { record("focus"); }
+        @Override public void blur()                                { record("blur"); }
+        @Override public void style(V8Array arguments)              { record("style", arguments.length()); }
+    }
+
+    private TestEnvironment     _env;
+    private V8                  _v8;
+    private V8Object            _typedPrototype;
+    private V8Object            _reflectivePrototype;
+    private RecordingElement    _typed;
+    private RecordingElement    _reflective;
+    private final List<V8Object> _objects = new ArrayList<>();
+
+    private V8Object wrap(BaseObject object, V8Object prototype) {
+        V8Object self = new V8Object(_v8);
+        self.add(Wrapper.UNIQUE_ID_KEY, object.getObjectId());
+        self.setPrototype(prototype);
+        _objects.add(self);
+        return self;
+    }
+
+    private static void generateReflectivePrototype(IExecutionEnvironment env, V8Object prototype, Class<?> cls) {
+        for(Method method : cls.getMethods()) {
+            if (Wrapper.isExported(cls, method))
+                prototype.registerJavaMethod(Wrapper.wrapMethod(env, method), method.getName());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _v8 = V8.createV8Runtime();
+        _env.runtime = _v8;
+
+        _typedPrototype = new V8Object(_v8);
+        Wrapper.generatePrototype(_env, _v8, _typedPrototype, BaseObject.class);
+        Wrapper.generatePrototype(_env, _v8, _typedPrototype, Element.class);
+        _reflectivePrototype = new V8Object(_v8);
+        generateReflectivePrototype(_env, _reflectivePrototype, BaseObject.class);
+        generateReflectivePrototype(_env, _reflectivePrototype, Element.class);
+
+        _typed = register(new RecordingElement(_env, "self"));
+        _reflective = register(new RecordingElement(_env, "self"));
+        RecordingElement typedChild = register(new RecordingElement(_env, "child"));
+        RecordingElement reflectiveChild = register(new RecordingElement(_env, "child"));
+
+        _v8.add("typed", wrap(_typed, _typedPrototype));
+        _v8.add("typedChild", wrap(typedChild, _typedPrototype));
+        _v8.add("reflective", wrap(_reflective, _reflectivePrototype));
+        _v8.add("reflectiveChild", wrap(reflectiveChild, _reflectivePrototype));
+    }
+
+    private <T extends BaseObject> T register(T object) {
+        _env.putObject(object.getObjectId(), object);
+        return object;
+    }
+
+    @After
+    public void tearDown() {
+        for(V8Object object : _objects)
+            object.close();
+        _typedPrototype.close();
+        _reflectivePrototype.close();
+        _v8.release(false);
+    }
+
+    //primitive result or name of V8 type, so results of both runs can be compared
+    private static Object unwrap(Object result) {
+        if (!(result instanceof V8Value))
+            return result;
+        V8Value value = (V8Value)result;
+        String type = V8Value.getStringRepresentation(value.getV8Type());
+        value.close();
+        return type;
+    }
+
+    private Object run(String body, String self, String child) {
+        V8Function fn = (V8Function)_v8.executeObjectScript("(function(self, child) { " + body + " })");
+        V8Array args = new V8Array(_v8);
+        V8Object selfObject = _v8.getObject(self), childObject = _v8.getObject(child);
+        args.push(selfObject).push(childObject);
+        try {
+            return unwrap(fn.call(null, args));
+        } finally {
+            args.close();
+            selfObject.close();
+            childObject.close();
+            fn.close();
+        }
+    }
+
+    //runs body with self and child bound to objects of typed and reflective prototypes, results and recorded calls must match
+    private Object assertSameResult(String body) {
+        Object typed = run(body, "typed", "typedChild");
+        Object reflective = run(body, "reflective", "reflectiveChild");
+        assertEquals(body, reflective, typed);
+        assertEquals(body, _reflective.calls, _typed.calls);
+        _typed.calls.clear();
+        _reflective.calls.clear();
+        return typed;
+    }
+
+    @Test
+    public void hotMethodsHaveTypedDispatchers() {
+        for(String name : Arrays.asList("on", "removeListener", "discard")) {
+            JavaCallback callback = Bindings.get(_env, BaseObject.class, name);
+            assertNotNull(name, callback);
+        }
+        for(String name : Arrays.asList("style", "append", "prepend", "remove", "discard", "addClass", "setAttribute",
+                "getScrollX", "getScrollY", "setScrollX", "setScrollY", "focus", "blur")) {
+            JavaCallback callback = Bindings.get(_env, Element.class, name);
+            assertNotNull(name, callback);
+        }
+    }
+
+    @Test
+    public void runtimeApiIsNotExported() {
+        for(String name : Arrays.asList("applyStyles", "flushScroll", "isGloballyVisible"))
+            assertFalse(name, _typedPrototype.contains(name));
+        assertTrue(_typedPrototype.contains("getRect")); //no-argument getter only, overload filling rect is package-private
+    }
+
+    @Test
+    public void stringArguments() {
+        assertSameResult("self.setAttribute('name', 'value')");
+        assertSameResult("self.setAttribute('', 'Ünïcödé ✓')");
+        assertSameResult("self.addClass('item')");
+    }
+
+    @Test
+    public void nullAndUndefinedArgumentsAreNull() {
+        assertSameResult("self.setAttribute('name', undefined)");
+        assertSameResult("self.setAttribute('name', null)");
+        assertSameResult("self.append(null)");
+    }
+
+    @Test
+    public void runtimeObjectArgumentsAreResolved() {
+        assertSameResult("self.append(child)");
+        assertSameResult("self.prepend(child)");
+        assertSameResult("self.append(self)");
+    }
+
+    @Test
+    public void arrayArgumentsArePassedThrough() {
+        assertSameResult("self.style(['width', 100, 'height', 50])");
+        assertSameResult("self.style('opacity', 0.5)");
+    }
+
+    @Test
+    public void noArguments() {
+        assertSameResult("self.focus(); self.blur(); self.remove()");
+    }
+
+    @Test
+    public void returnValues() {
+        assertEquals(0, assertSameResult("return self.getScrollX()"));
+        assertEquals(0, assertSameResult("return self.getScrollY()"));
+        assertNull(assertSameResult("return self.setAttribute('name', 'value')"));
+
+        assertEquals(false, assertSameResult("return self.removeListener('click', function() { })"));
+        assertEquals(true, assertSameResult("var f = function() { }; self.on('click', f); return self.removeListener('click', f)"));
+    }
+
+    @Test
+    public void discardedObjectThrows() {
+        _env.removeObject(_typed.getObjectId());
+        _env.removeObject(_reflective.getObjectId());
+        for(String self : Arrays.asList("typed", "reflective")) {
+            try {
+                run("self.focus()", self, self + "Child");
+                fail(self + " call on discarded object succeeded");
+            } catch (V8ScriptExecutionException e) {
+                assertTrue(self, e.getJSMessage() != null);
+            }
+        }
+    }
+}
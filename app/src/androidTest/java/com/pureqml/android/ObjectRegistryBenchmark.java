@@ -0,0 +1,88 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertEquals;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pureqml.android.runtime.BaseObject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+//lookup throughput of registry against boxed map it replaced, same ids, same access pattern
+//result is reported as instrumentation status, shown by am instrument -r
+@RunWith(AndroidJUnit4.class)
+public class ObjectRegistryBenchmark {
+    private static final int Objects = 10000;
+    private static final int Lookups = 5000000;
+    private static final int Rounds = 5;
+
+    private static int[] shuffle(int[] ids) {
+        int[] order = ids.clone();
+        long seed = 42;
+        for(int i = order.length - 1; i > 0; --i) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int j = (int)((seed >>> 33) % (i + 1));
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        return order;
+    }
+
+    private static long lookupRegistry(ObjectRegistry registry, int[] ids) {
+        long sum = 0;
+        for(int i = 0; i < Lookups; ++i)
+            sum += registry.get(ids[i % ids.length]).getObjectId();
+        return sum;
+    }
+
+    private static long lookupMap(HashMap<Integer, BaseObject> map, int[] ids) {
+        long sum = 0;
+        for(int i = 0; i < Lookups; ++i)
+            sum += map.get(ids[i % ids.length]).getObjectId();
+        return sum;
+    }
+
+    @Test
+    public void lookup() {
+        IExecutionEnvironment env = new TestEnvironment();
+        ObjectRegistry registry = new ObjectRegistry();
+        HashMap<Integer, BaseObject> map = new HashMap<>(10000);
+        int[] ids = new int[Objects];
+        for(int i = 0; i < Objects; ++i) {
+            int id = registry.allocate();
+            BaseObject object = new BaseObject(env);
+            registry.put(id, object);
+            map.put(id, object);
+            ids[i] = id;
+        }
+        ids = shuffle(ids);
+
+        long registryNanos = Long.MAX_VALUE, mapNanos = Long.MAX_VALUE;
+        for(int round = 0; round < Rounds; ++round) { //first rounds are warm-up, best one counts
+            long start = System.nanoTime();
+            long registrySum = lookupRegistry(registry, ids);
+            long middle = System.nanoTime();
+            long mapSum = lookupMap(map, ids);
+            long end = System.nanoTime();
+            assertEquals(mapSum, registrySum);
+            registryNanos = Math.min(registryNanos, middle - start);
+            mapNanos = Math.min(mapNanos, end - middle);
+        }
+
+        Bundle results = new Bundle();
+        results.putDouble("registry_lookups_per_second", Lookups * 1e9 / registryNanos);
+        results.putDouble("map_lookups_per_second", Lookups * 1e9 / mapNanos);
+        results.putString(Instrumentation.REPORT_KEY_STREAMRESULT, String.format(Locale.US,
+                "object lookup: registry %.1f M/s, HashMap<Integer, BaseObject> %.1f M/s, x%.2f\n",
+                Lookups * 1e3 / registryNanos, Lookups * 1e3 / mapNanos, (double)mapNanos / registryNanos));
+        InstrumentationRegistry.getInstrumentation().sendStatus(Activity.RESULT_OK, results);
+    }
+}
@@ -0,0 +1,83 @@
+package com.pureqml.android.runtime;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Function;
+import com.pureqml.android.TestEnvironment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+//emits/s of frequent events into a script listener, pooled overloads against generic varargs emit
+@RunWith(AndroidJUnit4.class)
+public class EmitBenchmark {
+    private static final int Emits = 100000;
+    private static final int Rounds = 5;
+
+    private TestEnvironment _env;
+    private V8              _v8;
+    private Element         _element;
+    private V8Function      _listener;
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _v8 = V8.createV8Runtime();
+        _env.runtime = _v8;
+        _env.argumentsPool = new ArgumentsPool(_v8);
+        _element = new Element(_env);
+        _listener = (V8Function)_v8.executeObjectScript("(function() { return false })");
+        for(String name : new String[] { "scroll", "resize", "keydown" })
+            _element.on(name, _listener);
+    }
+
+    @After
+    public void tearDown() {
+        _element.discard();
+        _listener.close();
+        _env.argumentsPool.close();
+        _v8.release(false);
+    }
+
+    //best of Rounds, emits per second
+    private static double measure(Runnable emit) {
+        long best = Long.MAX_VALUE;
+        for(int round = 0; round < Rounds; ++round) { //first rounds are warm-up
+            long start = System.nanoTime();
+            for(int i = 0; i < Emits; ++i)
+                emit.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Emits * 1e9 / best;
+    }
+
+    private static void report(String name, double pooled, double varargs) {
+        System.out.println(String.format(Locale.US, "%s: pooled %.0f K/s, varargs %.0f K/s, x%.2f",
+                name, pooled / 1000, varargs / 1000, pooled / varargs));
+    }
+
+    @Test
+    public void scroll() {
+        double pooled = measure(() -> _element.emit(null, "scroll"));
+        double varargs = measure(() -> _element.emit(null, "scroll", new Object[0]));
+        report("scroll", pooled, varargs);
+    }
+
+    @Test
+    public void resize() {
+        double pooled = measure(() -> _element.emit(null, "resize", 1920, 1080));
+        double varargs = measure(() -> _element.emit(null, "resize", (Object)1920, 1080));
+        report("resize", pooled, varargs);
+    }
+
+    @Test
+    public void keydown() {
+        double emits = measure(() -> _element.emitUntilTrue(null, "keydown", "Left"));
+        System.out.println(String.format(Locale.US, "keydown: %.0f K/s", emits / 1000));
+    }
+}
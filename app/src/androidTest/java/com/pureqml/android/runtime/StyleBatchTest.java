@@ -0,0 +1,112 @@
+package com.pureqml.android.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Function;
+import com.pureqml.android.TestEnvironment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//packed batch must deliver the same values as setting styles one by one, with one update per element
+@RunWith(AndroidJUnit4.class)
+public class StyleBatchTest {
+    private static final class Recorder extends Element {
+        final List<String>  styles = new ArrayList<>();
+
+        Recorder(TestEnvironment env) {
+            super(env);
+        }
+
+        @Override
+        protected void setStyle(String name, Object value) {
+            String type = value == null? "null": value instanceof Element? "element": value.getClass().getSimpleName();
+            styles.add(name + "=" + value + ":" + type);
+        }
+    }
+
+    private TestEnvironment _env;
+    private V8              _v8;
+    private StyleBatch      _batch;
+    private Recorder        _first;
+    private Recorder        _second;
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _v8 = V8.createV8Runtime();
+        _env.runtime = _v8;
+        _batch = new StyleBatch(_env);
+        _first = register(new Recorder(_env));
+        _second = register(new Recorder(_env));
+    }
+
+    @After
+    public void tearDown() {
+        _first.discard();
+        _second.discard();
+        _v8.release(false);
+    }
+
+    private Recorder register(Recorder el) {
+        _env.putObject(el.getObjectId(), el);
+        return el;
+    }
+
+    //calls apply with arrays returned by script, script gets ids of both elements
+    private void apply(String script) {
+        V8Function fn = (V8Function)_v8.executeObjectScript("(function(first, second) { " + script + " })");
+        V8Array args = new V8Array(_v8).push(_first.getObjectId()).push(_second.getObjectId());
+        V8Array result = (V8Array)fn.call(null, args);
+        V8Array layout = result.getArray(0), strings = result.getArray(1);
+        V8Array objects = result.length() > 2? result.getArray(2): null;
+        try {
+            _batch.apply(layout, strings, objects);
+        } finally {
+            layout.close();
+            strings.close();
+            if (objects != null)
+                objects.close();
+            result.close();
+            args.close();
+            fn.close();
+        }
+    }
+
+    @Test
+    public void decodesEveryValueType() {
+        apply("return [[first, 5, 0, 0, 1, 2, 1, 10, 3, 1, 0.5, 4, 2, 1, 5, 3, 0], " +
+                "['color', 'red', 'left', 'opacity', 'visibility', 'width']]");
+        assertEquals(Arrays.asList("color=red:String", "left=10:Integer", "opacity=0.5:Double",
+                "visibility=true:Boolean", "width=null:null"), _first.styles);
+    }
+
+    @Test
+    public void namesAreSharedBetweenElements() {
+        apply("return [[first, 1, 0, 1, 10, second, 2, 0, 1, -20, 1, 1, 0], ['left', 'top']]");
+        assertEquals(Arrays.asList("left=10:Integer"), _first.styles);
+        assertEquals(Arrays.asList("left=-20:Integer", "top=0:Integer"), _second.styles);
+    }
+
+    @Test
+    public void objectValuesAreReadFromObjects() {
+        apply("return [[first, 2, 0, 4, 1, 1, 4, 0], ['transform', 'clip'], [null, {}]]");
+        assertEquals(Arrays.asList("transform=[object Object]:V8Object", "clip=null:null"), _first.styles);
+    }
+
+    @Test
+    public void invalidElementIsSkipped() {
+        apply("return [[-1, 2, 0, 1, 1, 0, 1, 2, first, 1, 0, 1, 3], ['left']]");
+        assertEquals(Arrays.asList("left=3:Integer"), _first.styles);
+    }
+}
@@ -0,0 +1,219 @@
+package com.pureqml.android;
+
+import com.eclipsesource.v8.JavaCallback;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Function;
+import com.eclipsesource.v8.V8Object;
+import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.Element;
+import com.pureqml.android.runtime.Image;
+import com.pureqml.android.runtime.Input;
+import com.pureqml.android.runtime.LocalStorage;
+import com.pureqml.android.runtime.Text;
+import com.pureqml.android.runtime.VideoPlayer;
+
+//typed dispatchers for hot prototype methods, used by Wrapper.generatePrototype instead of Method.invoke
+//no reflection, no Object[] argument array, arguments are read straight from V8Array
+final class Bindings {
+    private interface Invoker<T> {
+        Object invoke(T self, V8Array arguments);
+    }
+
+    private static final class Dispatcher<T extends BaseObject> implements JavaCallback {
+        private final IExecutionEnvironment _env;
+        private final Class<T>              _cls;
+        private final Invoker<T>            _invoker;
+
+        Dispatcher(IExecutionEnvironment env, Class<T> cls, Invoker<T> invoker) {
+            _env = env;
+            _cls = cls;
+            _invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(V8Object self, V8Array arguments) {
+            int id = self.getInteger(Wrapper.UNIQUE_ID_KEY);
+            BaseObject object = _env.getObjectById(id);
+            if (object == null)
+                throw new RuntimeException("Object with " + id + " not found (discarded).");
+            return _invoker.invoke(_cls.cast(object), arguments);
+        }
+    }
+
+    private static String getString(IExecutionEnvironment env, V8Array arguments, int index) {
+        return (String)TypeConverter.getValue(env, String.class, arguments.get(index));
+    }
+
+    private static V8Function getFunction(IExecutionEnvironment env, V8Array arguments, int index) {
+        return (V8Function)TypeConverter.getValue(env, V8Function.class, arguments.get(index));
+    }
+
+    private static V8Object getObject(IExecutionEnvironment env, V8Array arguments, int index) {
+        return (V8Object)TypeConverter.getValue(env, V8Object.class, arguments.get(index));
+    }
+
+    private static BaseObject getBaseObject(IExecutionEnvironment env, V8Array arguments, int index) {
+        Object value = TypeConverter.getValue(env, BaseObject.class, arguments.get(index));
+        if (value != null && !(value instanceof BaseObject))
+            throw new RuntimeException("invoke failed: argument " + index + " is not a runtime object");
+        return (BaseObject)value;
+    }
+
+    private static JavaCallback getBaseObjectMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "on":
+                return new Dispatcher<>(env, BaseObject.class, (self, args) -> {
+                    self.on(getString(env, args, 0), getFunction(env, args, 1)); return null;
+                });
+            case "removeListener":
+                return new Dispatcher<>(env, BaseObject.class, (self, args) ->
+                    self.removeListener(getString(env, args, 0), getFunction(env, args, 1)));
+            case "discard":
+                return new Dispatcher<>(env, BaseObject.class, (self, args) -> { self.discard(); return null; });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getElementMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "style":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.style(args); return null; });
+            case "append":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.append(getBaseObject(env, args, 0)); return null; });
+            case "prepend":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.prepend(getBaseObject(env, args, 0)); return null; });
+            case "remove":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.remove(); return null; });
+            case "discard":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.discard(); return null; });
+            case "addClass":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.addClass(getString(env, args, 0)); return null; });
+            case "setAttribute":
+                return new Dispatcher<>(env, Element.class, (self, args) -> {
+                    self.setAttribute(getString(env, args, 0), getString(env, args, 1)); return null;
+                });
+            case "getScrollX":
+                return new Dispatcher<>(env, Element.class, (self, args) -> self.getScrollX());
+            case "getScrollY":
+                return new Dispatcher<>(env, Element.class, (self, args) -> self.getScrollY());
+            case "setScrollX":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.setScrollX(args.getInteger(0)); return null; });
+            case "setScrollY":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.setScrollY(args.getInteger(0)); return null; });
+            case "focus":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.focus(); return null; });
+            case "blur":
+                return new Dispatcher<>(env, Element.class, (self, args) -> { self.blur(); return null; });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getTextMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "setText":
+                return new Dispatcher<>(env, Text.class, (self, args) -> { self.setText(getString(env, args, 0)); return null; });
+            case "layoutText":
+                return new Dispatcher<>(env, Text.class, (self, args) -> { self.layoutText(getFunction(env, args, 0)); return null; });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getImageMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "load":
+                return new Dispatcher<>(env, Image.class, (self, args) -> {
+                    self.load(getString(env, args, 0), getFunction(env, args, 1)); return null;
+                });
+            case "discard":
+                return new Dispatcher<>(env, Image.class, (self, args) -> { self.discard(); return null; });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getInputMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "setAttribute":
+                return new Dispatcher<>(env, Input.class, (self, args) -> {
+                    self.setAttribute(getString(env, args, 0), getString(env, args, 1)); return null;
+                });
+            case "getAttribute":
+                return new Dispatcher<>(env, Input.class, (self, args) -> self.getAttribute(getString(env, args, 0)));
+            case "focus":
+                return new Dispatcher<>(env, Input.class, (self, args) -> { self.focus(); return null; });
+            case "blur":
+                return new Dispatcher<>(env, Input.class, (self, args) -> { self.blur(); return null; });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getLocalStorageMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "get":
+                return new Dispatcher<>(env, LocalStorage.class, (self, args) -> {
+                    self.get(getString(env, args, 0), getFunction(env, args, 1), getFunction(env, args, 2), getObject(env, args, 3)); return null;
+                });
+            case "set":
+                return new Dispatcher<>(env, LocalStorage.class, (self, args) -> {
+                    self.set(getString(env, args, 0), getString(env, args, 1), getFunction(env, args, 2), getObject(env, args, 3)); return null;
+                });
+            case "erase":
+                return new Dispatcher<>(env, LocalStorage.class, (self, args) -> {
+                    self.erase(getString(env, args, 0), getFunction(env, args, 1), getObject(env, args, 2)); return null;
+                });
+            default:
+                return null;
+        }
+    }
+
+    private static JavaCallback getVideoPlayerMethod(IExecutionEnvironment env, String name) {
+        switch(name) {
+            case "play":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.play(); return null; });
+            case "pause":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.pause(); return null; });
+            case "stop":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.stop(); return null; });
+            case "seek":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.seek(args.getInteger(0)); return null; });
+            case "seekTo":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.seekTo(args.getInteger(0)); return null; });
+            case "setSource":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.setSource(getString(env, args, 0)); return null; });
+            case "setVolume":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.setVolume(args.getInteger(0)); return null; });
+            case "setMute":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> { self.setMute(args.getBoolean(0)); return null; });
+            case "setRect":
+                return new Dispatcher<>(env, VideoPlayer.class, (self, args) -> {
+                    self.setRect(args.getInteger(0), args.getInteger(1), args.getInteger(2), args.getInteger(3)); return null;
+                });
+            default:
+                return null;
+        }
+    }
+
+    //returns typed dispatcher for method declared in cls or null if it should go through reflection
+    static JavaCallback get(IExecutionEnvironment env, Class<?> cls, String name) {
+        if (cls == BaseObject.class)
+            return getBaseObjectMethod(env, name);
+        else if (cls == Element.class)
+            return getElementMethod(env, name);
+        else if (cls == Text.class)
+            return getTextMethod(env, name);
+        else if (cls == Image.class)
+            return getImageMethod(env, name);
+        else if (cls == Input.class)
+            return getInputMethod(env, name);
+        else if (cls == LocalStorage.class)
+            return getLocalStorageMethod(env, name);
+        else if (cls == VideoPlayer.class)
+            return getVideoPlayerMethod(env, name);
+        else
+            return null;
+    }
+}
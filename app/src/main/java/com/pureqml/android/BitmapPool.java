@@ -0,0 +1,169 @@
+package com.pureqml.android;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+//decoded bitmaps which are not referenced anymore, reused as BitmapFactory.Options.inBitmap
+//bitmap is referenced by memory cache and by every image element painting it; after last release it waits
+//until next frame, so display lists recorded with it are re-recorded, and until render thread finished
+//every frame recorded before, see queueFrame() and frameRendered()
+final class BitmapPool {
+    private static final int Classes = 32;
+
+    private final long                              _maxSize;
+    private final IdentityHashMap<Bitmap, int[]>    _refs = new IdentityHashMap<>();
+    private final ArrayList<Bitmap>                 _pending = new ArrayList<>();
+    private final ArrayList<Integer>                _pendingFrames = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Bitmap>[]               _classes = new ArrayList[Classes]; //by allocation size, power of two
+    private long                                    _size;
+    private int                                     _frame;     //script frame being painted
+    private int                                     _queued;    //last frame submitted to render thread
+    private int                                     _rendered;  //last frame render thread finished
+    private long                                    _hits;
+    private long                                    _misses;
+    private long                                    _dropped;
+
+    BitmapPool(long maxSize) {
+        _maxSize = maxSize;
+        for(int i = 0; i < Classes; ++i)
+            _classes[i] = new ArrayList<>();
+    }
+
+    //index of power of two class containing given size
+    private static int getClass(long bytes) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(bytes - 1, 1)), Classes - 1);
+    }
+
+    synchronized void retain(Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+        int[] refs = _refs.get(bitmap);
+        if (refs == null) {
+            int index = _pending.indexOf(bitmap);
+            if (index >= 0) {
+                //painted again before fence passed, e.g. image was evicted and loaded back
+                _pending.remove(index);
+                _pendingFrames.remove(index);
+            }
+            _refs.put(bitmap, new int[] { 1 });
+        } else
+            ++refs[0];
+    }
+
+    synchronized void release(Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+        int[] refs = _refs.get(bitmap);
+        if (refs == null || --refs[0] > 0)
+            return;
+        _refs.remove(bitmap);
+        if (!bitmap.isMutable() || bitmap.isRecycled() || bitmap.getConfig() != Bitmap.Config.ARGB_8888)
+            return;
+        _pending.add(bitmap);
+        _pendingFrames.add(_frame);
+    }
+
+    //called on every frame, bitmaps released in previous frames become reusable if no frame recorded with them is in flight
+    synchronized void beginFrame() {
+        ++_frame;
+        flush();
+    }
+
+    //called before frame recorded in current frame is passed to render thread, returns fence for frameRendered()
+    synchronized int queueFrame() {
+        _queued = _frame;
+        return _frame;
+    }
+
+    //render thread finished or dropped frame, frames are rendered in order they were queued
+    synchronized void frameRendered(int fence) {
+        _rendered = fence;
+        flush();
+    }
+
+    //pending bitmaps are ordered by frame they were released in
+    private void flush() {
+        int n = 0;
+        while (n < _pending.size() && isFencePassed(_pendingFrames.get(n)))
+            ++n;
+        for(int i = 0; i < n; ++i)
+            put(_pending.get(i));
+        _pending.subList(0, n).clear();
+        _pendingFrames.subList(0, n).clear();
+    }
+
+    private boolean isFencePassed(int frame) {
+        if (frame >= _frame)
+            return false;
+        return frame <= _rendered || _queued == _rendered;
+    }
+
+    private void put(Bitmap bitmap) {
+        long bytes = bitmap.getAllocationByteCount();
+        if (bytes > _maxSize) {
+            ++_dropped;
+            return;
+        }
+        //largest bitmaps go first, they are the least likely to match
+        for(int c = Classes - 1; c >= 0 && _size + bytes > _maxSize; --c) {
+            ArrayList<Bitmap> bitmaps = _classes[c];
+            while (!bitmaps.isEmpty() && _size + bytes > _maxSize) {
+                _size -= bitmaps.remove(bitmaps.size() - 1).getAllocationByteCount();
+                ++_dropped;
+            }
+        }
+        _classes[getClass(bytes)].add(bitmap);
+        _size += bytes;
+    }
+
+    //returns pooled ARGB_8888 bitmap with allocation of at least given size, null if there is none
+    //allocation at most twice as large as needed is taken, so big bitmaps are not wasted on small images
+    synchronized Bitmap get(long bytes) {
+        int c = getClass(bytes);
+        for(int k = c; k <= c + 1 && k < Classes; ++k) {
+            ArrayList<Bitmap> bitmaps = _classes[k];
+            for(int i = bitmaps.size() - 1; i >= 0; --i) {
+                Bitmap bitmap = bitmaps.get(i);
+                long size = bitmap.getAllocationByteCount();
+                if (size >= bytes && size <= bytes * 2) {
+                    bitmaps.remove(i);
+                    _size -= size;
+                    ++_hits;
+                    return bitmap;
+                }
+            }
+        }
+        ++_misses;
+        return null;
+    }
+
+    synchronized long getSize()    { return _size; }
+    synchronized long getHits()    { return _hits; }
+    synchronized long getMisses()  { return _misses; }
+
+    synchronized float getHitRatio() {
+        long total = _hits + _misses;
+        return total > 0? (float)_hits / total: 0;
+    }
+
+    synchronized void clear() {
+        for(ArrayList<Bitmap> bitmaps : _classes)
+            bitmaps.clear();
+        _pending.clear();
+        _pendingFrames.clear();
+        _size = 0;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "bitmap pool hits: %d, misses: %d (%.1f%%), dropped: %d, pending: %d, used %dK of %dK",
+                _hits, _misses, getHitRatio() * 100, _dropped, _pending.size(), _size / 1024, _maxSize / 1024);
+    }
+}
@@ -1,6 +1,7 @@
 package com.pureqml.android;
 
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.app.Service;
 import android.app.UiModeManager;
 import android.content.Context;
@@ -12,6 +13,7 @@ import android.content.res.Configuration;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PointF;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
@@ -19,6 +21,7 @@ import android.graphics.Typeface;
 import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.Handler;
 import android.os.Looper;
 import android.os.SystemClock;
 import android.provider.Settings;
@@ -26,8 +29,11 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
+import android.view.Surface;
 import android.view.SurfaceHolder;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 
 import com.eclipsesource.v8.JavaCallback;
@@ -37,16 +43,23 @@ import com.eclipsesource.v8.V8;
 import com.eclipsesource.v8.V8Array;
 import com.eclipsesource.v8.V8Function;
 import com.eclipsesource.v8.V8Object;
+import com.eclipsesource.v8.V8Value;
+import com.pureqml.android.runtime.ArgumentsPool;
 import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.CacheEngine;
 import com.pureqml.android.runtime.Console;
+import com.pureqml.android.runtime.DamageRegion;
 import com.pureqml.android.runtime.Element;
+import com.pureqml.android.runtime.Elements;
 import com.pureqml.android.runtime.HttpRequest;
 import com.pureqml.android.runtime.Image;
+import com.pureqml.android.runtime.ImagePrefetcher;
 import com.pureqml.android.runtime.Input;
 import com.pureqml.android.runtime.LocalStorage;
 import com.pureqml.android.runtime.PaintState;
 import com.pureqml.android.runtime.Rectangle;
 import com.pureqml.android.runtime.Spinner;
+import com.pureqml.android.runtime.StyleBatch;
 import com.pureqml.android.runtime.Text;
 import com.pureqml.android.runtime.Timers;
 import com.pureqml.android.runtime.VideoPlayer;
@@ -68,7 +81,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -77,8 +89,11 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public final class ExecutionEnvironment extends Service
-        implements IExecutionEnvironment, IResource {
+        implements IExecutionEnvironment, IResource, InputDispatcher.Target {
     public static final String TAG = "ExecutionEnvironment";
+    private static final long DefaultFrameBudgetNanos = 1000000000L / 60;
+    private static final int FrameStatsLogInterval = 600;
+    private static final int SplitDamageAreaPercent = 50;
 
     private final Map<String, ComputedStyle> defaultStyleForClass = new HashMap<>();
 
@@ -100,12 +115,11 @@ public final class ExecutionEnvironment extends Service
         ElementUpdater(Element el, float seconds) {
             element = el;
             duration = (long)(1000 * seconds);
-            started = SystemClock.currentThreadTimeMillis();
+            started = SystemClock.uptimeMillis(); //same time base as Choreographer frame time
         }
 
-        public boolean tick() {
-            long dt = SystemClock.currentThreadTimeMillis() - started;
-            Log.v(TAG, "tick " + dt + " of " + duration);
+        public boolean tick(long frameTime) {
+            long dt = frameTime - started;
             boolean running = dt < duration;
             if (running)
                 element.animate();
@@ -115,16 +129,18 @@ public final class ExecutionEnvironment extends Service
 
     private final IBinder _binder = new LocalBinder();
     private V8 _v8;
+    private ArgumentsPool _argumentsPool;
 
     static class WeakRefList<E> extends ArrayList<WeakReference<E>> {}
 
     //Element collection
-    private final HashMap<Integer, BaseObject>_objects = new HashMap<>(10000);
-    private int                         _nextObjectId = 1;
+    private final ObjectRegistry              _objects = new ObjectRegistry();
     private final WeakRefList<IResource>      _resources = new WeakRefList<>();
     private final Set<Element>                _updatedElements = new HashSet<>();
     private final Map<Element, ElementUpdater>_elementUpdaters = new HashMap<>();
     private final Set<Element>                _elementUpdatersStop = new HashSet<>();
+    private final Map<Element, ElementUpdater>_elementUpdatersStart = new HashMap<>(); //started while ticking
+    private boolean                           _tickingAnimations;
     private Rect                        _surfaceGeometry;
     private V8Object                    _rootObject;
     private Element                     _rootElement;
@@ -133,11 +149,30 @@ public final class ExecutionEnvironment extends Service
     private Timers                      _timers;
     private final ExecutorService       _threadPool;
     private final ImageLoader           _imageLoader;
+    private final ImagePrefetcher       _imagePrefetcher = new ImagePrefetcher();
     private IRenderer                   _renderer;
     private DisplayMetrics              _displayMetrics;
     private ViewGroup                   _rootView;
     private boolean                     _paintScheduled;
-    private int                         _eventId;
+    private final DamageRegion          _damage = new DamageRegion();
+    private boolean                     _damageRegionMode = true;
+    private boolean                     _hardwareRenderer;
+    private boolean                     _renderThreadMode = true;
+    private final FrameRenderer         _frameRenderer;
+    private final CacheEngine           _cacheEngine = new CacheEngine();
+    private final StyleBatch            _styleBatch = new StyleBatch(this);
+    private final Rect                  _lockRect = new Rect();
+    private final Paint                 _clearPaint = new Paint();
+    private final FrameScheduler        _frameScheduler;
+    private final FrameStats            _frameStats = new FrameStats();
+    private volatile long               _pendingFrameTime;
+    private long                        _frameTime;
+    private boolean                     _frameBudgetMode;
+    private long                        _frameBudgetNanos = DefaultFrameBudgetNanos;
+    private final InputDispatcher       _inputDispatcher = new InputDispatcher(this, new Handler(Looper.getMainLooper())::post);
+    private VelocityTracker             _velocityTracker;
+    private float                       _maxFlingVelocity;
+    private final ArrayList<Element>    _pendingScrolls = new ArrayList<>();
     private boolean                     _blockInput;
     private View                        _focusedView;
     private SurfaceHolder               _surfaceHolder;
@@ -158,6 +193,30 @@ public final class ExecutionEnvironment extends Service
         Log.i(TAG, "started cached thread pool, creating image loader...");
         _imageLoader = new ImageLoader(this);
 
+        _clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+
+        _frameRenderer = new FrameRenderer(new FrameRenderer.Listener() {
+            @Override
+            public void onFullRedrawNeeded() {
+                ExecutorService executor = _executor;
+                if (executor != null && !executor.isShutdown())
+                    executor.execute(_fullRedrawTask);
+            }
+
+            @Override
+            public void onFrameRendered(FrameRenderer.Frame frame) {
+                _imageLoader.getBitmapPool().frameRendered(frame.fence); //bitmaps drawn into it can be reused now
+            }
+        });
+
+        _frameScheduler = new FrameScheduler(frameTimeNanos -> {
+            ExecutorService executor = _executor;
+            if (executor == null || executor.isShutdown())
+                return;
+            _pendingFrameTime = frameTimeNanos;
+            executor.execute(_frameTask);
+        });
+
         _executor.execute(new SafeRunnable() {
             @Override
             public void doRun() {
@@ -292,6 +351,30 @@ public final class ExecutionEnvironment extends Service
                     if (_renderer != null)
                         _renderer.setFullScreen(_fullScreen);
                     break;
+                case "frame-budget": {
+                    //frame budget in ms, non-visible animations are deferred when frame runs longer, 0 disables
+                    float budget = TypeConverter.toFloat(v8Array.get(1));
+                    _frameBudgetMode = budget > 0;
+                    if (_frameBudgetMode)
+                        _frameBudgetNanos = (long)(budget * 1000000);
+                    break;
+                }
+                case "renderer":
+                    //"hardware" or "software"
+                    setRendererMode(v8Array.get(1).toString());
+                    break;
+                case "cache-budget":
+                    //automatic display list cache budget in megabytes, 0 disables automatic caching
+                    _cacheEngine.setBudget((long)(TypeConverter.toFloat(v8Array.get(1)) * 1024 * 1024));
+                    break;
+                case "render-thread":
+                    //software frames are recorded on script thread and rasterized on separate thread
+                    _renderThreadMode = TypeConverter.toBoolean(v8Array.get(1));
+                    break;
+                case "damage-region":
+                    //disjoint damage rects presented separately and subtree culling, off repaints single bounding rect
+                    _damageRegionMode = TypeConverter.toBoolean(v8Array.get(1));
+                    break;
                 case "keep-screen-on":
                     _keepScreenOn = TypeConverter.toBoolean(v8Array.get(1));
                     if (_renderer != null)
@@ -366,6 +449,20 @@ public final class ExecutionEnvironment extends Service
             }
         }, "style");
 
+        v8FD.registerJavaMethod((v8Object, v8Array) -> {
+            V8Array layout = v8Array.getArray(0);
+            V8Array strings = v8Array.getArray(1);
+            V8Array objects = v8Array.getType(2) == V8Value.V8_ARRAY? v8Array.getArray(2): null;
+            try {
+                _styleBatch.apply(layout, strings, objects);
+            } finally {
+                layout.close();
+                strings.close();
+                if (objects != null)
+                    objects.close();
+            }
+        }, "applyStyles");
+
         V8Object objectProto    = Wrapper.generateClass(this, _v8, v8FD, "Object", BaseObject.class, new Class<?>[] { IExecutionEnvironment.class });
         V8Object elementProto   = Wrapper.generateClass(this, _v8, v8FD, "Element", Element.class, new Class<?>[] { IExecutionEnvironment.class });
         elementProto.setPrototype(objectProto);
@@ -583,6 +680,7 @@ public final class ExecutionEnvironment extends Service
 
         Log.v(TAG, "creating v8 runtime...");
         _v8 = V8.createV8Runtime();
+        _argumentsPool = new ArgumentsPool(_v8);
         Log.v(TAG, "registering runtime...");
         registerRuntime();
 
@@ -657,7 +755,8 @@ public final class ExecutionEnvironment extends Service
         try { _rootObject.executeVoidFunction("discard", null); }
         catch(Exception e) { Log.e(TAG, "discard failed", e); }
 
-        Vector<BaseObject> objects = new Vector<>(_objects.values());
+        Log.i(TAG, "discarding " + _objects.size() + " objects, peak: " + _objects.peakSize() + ", occupancy: " + _objects.occupancy());
+        ArrayList<BaseObject> objects = _objects.values();
         for(BaseObject o : objects) {
             if (o != null)
                 o.discard();
@@ -667,6 +766,13 @@ public final class ExecutionEnvironment extends Service
             _rootElement.discard();
             _rootElement = null;
         }
+        _pendingScrolls.clear();
+        Log.i(TAG, "image prefetch " + _imagePrefetcher);
+        _imagePrefetcher.clear();
+        if (_velocityTracker != null) {
+            _velocityTracker.recycle();
+            _velocityTracker = null;
+        }
 
         _executor.execute(new SafeRunnable() {
             @Override
@@ -681,6 +787,7 @@ public final class ExecutionEnvironment extends Service
                 }
 
                 _objects.clear();
+                _argumentsPool.close(); //pooled arrays hold v8 handles
                 try {
                     _v8.close();
                     _v8 = null;
@@ -694,6 +801,11 @@ public final class ExecutionEnvironment extends Service
         } catch (InterruptedException | ExecutionException e) {
             Log.e(TAG, "stopping environment failed", e);
         }
+        _frameScheduler.discard();
+        _frameRenderer.discard();
+        _imageLoader.discard();
+        _inputDispatcher.clear();
+        Log.i(TAG, _inputDispatcher.getTouchLatency() + ", " + _inputDispatcher.getKeyLatency());
         Log.i(TAG, "shutting down main executor...");
         _executor.close();
         Log.i(TAG, "main executor shut down");
@@ -709,7 +821,7 @@ public final class ExecutionEnvironment extends Service
 
     @Override
     public int nextObjectId() {
-        return _nextObjectId++;
+        return _objects.allocate();
     }
 
     @Override
@@ -763,6 +875,11 @@ public final class ExecutionEnvironment extends Service
         return _imageLoader;
     }
 
+    @Override
+    public ImagePrefetcher getImagePrefetcher() {
+        return _imagePrefetcher;
+    }
+
     void setSurfaceFrame(final Rect rect) {
         _executor.execute(new SafeRunnable() {
             @Override
@@ -789,12 +906,21 @@ public final class ExecutionEnvironment extends Service
     }
 
     @Override
-    public void startAnimation(Element el, float seconds)
-    { _elementUpdaters.put(el, new ElementUpdater(el, seconds)); }
+    public void startAnimation(Element el, float seconds) {
+        ElementUpdater updater = new ElementUpdater(el, seconds);
+        _elementUpdatersStop.remove(el);
+        if (_tickingAnimations)
+            _elementUpdatersStart.put(el, updater); //animate() or its event handlers started animation, avoid concurrent modification
+        else
+            _elementUpdaters.put(el, updater);
+        paint();
+    }
 
     @Override
-    public void stopAnimation(Element el)
-    { _elementUpdatersStop.add(el); }
+    public void stopAnimation(Element el) {
+        _elementUpdatersStart.remove(el);
+        _elementUpdatersStop.add(el);
+    }
 
     private int getDebugColorIndex() {
         int index = _debugColorIndex++ % 3;
@@ -816,23 +942,94 @@ public final class ExecutionEnvironment extends Service
         if (_rootElement == null || holder == null || holder.getSurface() == null)
             return;
 
-        Rect rect = popDirtyRect();
-        if (rect == null)
+        FrameRenderer.Frame frame = null;
+        if (_renderThreadMode && !_hardwareRenderer && _surfaceGeometry != null) {
+            frame = _frameRenderer.obtainFrame();
+            if (frame == null) {
+                //render thread is behind, damage keeps accumulating until next vsync
+                _frameStats.addDeferred(1);
+                paint();
+                return;
+            }
+        }
+
+        DamageRegion damage = popDamage();
+        _frameStats.mark(FrameStats.StageLayout);
+        if (damage == null) {
+            if (frame != null)
+                _frameRenderer.recycle(frame);
+            return;
+        }
+
+        if (_hardwareRenderer) {
+            paintHardware(holder);
             return;
+        }
+
+        Rect bounds = damage.getBounds();
+        long boundsArea = (long)bounds.width() * bounds.height();
+        boolean split = _damageRegionMode && damage.size() > 1 && damage.getArea() * 100 < boundsArea * SplitDamageAreaPercent;
+
+        if (frame != null) {
+            recordFrame(holder, frame, damage, split);
+            return;
+        }
+
+        if (split) {
+            //disjoint rects are much smaller than their bounding box, present them one by one
+            for(int i = 0; i < damage.size(); ++i)
+                paintRect(holder, damage.get(i));
+        } else
+            paintRect(holder, bounds);
+    }
+
+    //records damaged part of the tree, render thread rasterizes and posts it
+    private void recordFrame(final SurfaceHolder holder, FrameRenderer.Frame frame, DamageRegion damage, boolean split) {
+        Rect surface = _surfaceGeometry;
+        if (_damageRegionMode)
+            frame.recorded.set(damage.getBounds());
+        else
+            frame.recorded.set(0, 0, surface.width(), surface.height());
+
+        if (split) {
+            for(int i = 0; i < damage.size(); ++i)
+                frame.addRect(damage.get(i));
+        } else
+            frame.addRect(damage.getBounds());
+
+        try {
+            Canvas canvas = frame.picture.beginRecording(surface.width(), surface.height());
+            canvas.clipRect(frame.recorded);
+            PaintState paint = PaintState.obtain(canvas, _damageRegionMode? frame.recorded: null);
+            _rootElement.paint(paint);
+            paint.recycle();
+        } catch (Exception e) {
+            Log.e(TAG, "frame recording failed", e);
+        } finally {
+            frame.picture.endRecording();
+            _frameStats.mark(FrameStats.StagePaint);
+        }
+
+        frame.holder = holder;
+        frame.fence = _imageLoader.getBitmapPool().queueFrame();
+        _frameRenderer.submit(frame);
+        _frameStats.mark(FrameStats.StagePost);
+    }
+
+    private void paintRect(final SurfaceHolder holder, Rect damageRect) {
+        Rect rect = _lockRect;
+        rect.set(damageRect); //lockCanvas may grow it to whatever it could not preserve, all of it is repainted
 
         Canvas canvas = null;
         try {
             canvas = holder.lockCanvas(rect);
+            _frameStats.mark(FrameStats.StagePost);
             if (canvas != null) {
-                PaintState paint = new PaintState(canvas);
-
-                {
-                    Paint bgPaint = new Paint();
-                    bgPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-                    canvas.drawRect(rect, bgPaint);
-                }
+                canvas.drawRect(rect, _clearPaint);
 
+                PaintState paint = PaintState.obtain(canvas, _damageRegionMode? rect: null);
                 _rootElement.paint(paint);
+                paint.recycle();
 
 //                {
 //                    Paint updatePaint = new Paint();
@@ -843,92 +1040,234 @@ public final class ExecutionEnvironment extends Service
         } catch (Exception e) {
             Log.e(TAG, "repaint failed", e);
         } finally {
+            _frameStats.mark(FrameStats.StagePaint);
             if (canvas != null)
                 holder.unlockCanvasAndPost(canvas);
+            _frameStats.mark(FrameStats.StagePost);
+        }
+    }
+
+    //gpu rasterization, hardware canvas has no partial updates, so every frame is full frame
+    //cached subtrees are RenderNodes on Q+ and only their properties change between frames
+    @TargetApi(Build.VERSION_CODES.M)
+    private void paintHardware(final SurfaceHolder holder) {
+        Surface surface = holder.getSurface();
+        Canvas canvas = null;
+        try {
+            canvas = surface.lockHardwareCanvas();
+            _frameStats.mark(FrameStats.StagePost);
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            PaintState paint = PaintState.obtain(canvas, null);
+            _rootElement.paint(paint);
+            paint.recycle();
+        } catch (Exception e) {
+            Log.e(TAG, "hardware repaint failed", e);
+        } finally {
+            _frameStats.mark(FrameStats.StagePaint);
+            if (canvas != null)
+                surface.unlockCanvasAndPost(canvas);
+            _frameStats.mark(FrameStats.StagePost);
         }
     }
 
+    private void setRendererMode(String renderer) {
+        boolean hardware = "hardware".equals(renderer);
+        if (hardware && Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            Log.w(TAG, "hardware renderer needs android 6.0+, using software renderer");
+            hardware = false;
+        }
+        if (_hardwareRenderer == hardware)
+            return;
+        Log.i(TAG, "switching to " + (hardware? "hardware": "software") + " renderer");
+        _hardwareRenderer = hardware;
+        update(_rootElement); //full redraw with display lists of the new kind
+    }
+
+    //schedules frame on next vsync, all updates until then are coalesced into it
     public void paint() {
         synchronized (this) {
             if (_paintScheduled || _executor == null || _executor.isShutdown() || _rootElement == null || _renderer == null)
                 return;
             _paintScheduled = true;
         }
-        _executor.execute(new SafeRunnable() {
-            @Override
-            public void doRun() {
-                synchronized (this) { _paintScheduled = false; }
-                ExecutionEnvironment.this.paint(_surfaceHolder);
+        _frameScheduler.requestFrame();
+    }
 
-                if (_elementUpdaters.isEmpty()) {
-                    return;
-                }
-                Iterator<Map.Entry<Element, ElementUpdater>> it =_elementUpdaters.entrySet().iterator();
-                while(it.hasNext()) {
-                    Map.Entry<Element, ElementUpdater> entry = it.next();
-                    if (!entry.getValue().tick())
-                        it.remove();
-                }
+    private final SafeRunnable _fullRedrawTask = new SafeRunnable() {
+        @Override
+        public void doRun() {
+            update(_rootElement);
+        }
+    };
 
-                for(Element el : _elementUpdatersStop) //avoid concurrent modification (element can call stopAnimation at any time
-                    _elementUpdaters.remove(el);
-                _elementUpdatersStop.clear();
+    private final SafeRunnable _frameTask = new SafeRunnable() {
+        @Override
+        public void doRun() {
+            frame(_pendingFrameTime);
+        }
+    };
+
+    private void frame(long frameTimeNanos) {
+        synchronized (this) { _paintScheduled = false; }
+        _frameTime = frameTimeNanos / 1000000;
+
+        FrameStats stats = _frameStats;
+        boolean overBudget = _frameBudgetMode && stats.getLastFrameNanos() > _frameBudgetNanos;
+        stats.beginFrame();
+        _cacheEngine.beginFrame();
+        _imageLoader.beginFrame();
+
+        if (_timers != null) {
+            _timers.advance(_frameTime); //timers due by this frame land in it, not in the next one
+            _timers.runAnimationFrameCallbacks(_frameTime);
+        }
+        flushScrolls();
+        tickAnimations(overBudget);
+        _imagePrefetcher.update(_frameTime);
+        stats.mark(FrameStats.StageScript);
+
+        paint(_surfaceHolder);
+        stats.endFrame(_frameBudgetNanos);
 
-                if (!_elementUpdaters.isEmpty())
-                    ExecutionEnvironment.this.paint(); //restart
+        if (stats.getFrames() % FrameStatsLogInterval == 0 && Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, "frame stats: " + stats + ", " + _cacheEngine + ", " + _frameRenderer + ", " + _imageLoader.getBitmapPool() + ", " + _imageLoader.getScheduler() + ", " + _imagePrefetcher);
+
+        if (!_elementUpdaters.isEmpty() || !_pendingScrolls.isEmpty() || (_timers != null && _timers.hasAnimationFrameCallbacks()))
+            paint(); //restart
+    }
+
+    private void tickAnimations(boolean overBudget) {
+        if (_elementUpdaters.isEmpty())
+            return;
+
+        int deferred = 0;
+        _tickingAnimations = true;
+        try {
+            Iterator<Map.Entry<Element, ElementUpdater>> it = _elementUpdaters.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Element, ElementUpdater> entry = it.next();
+                if (overBudget && !Elements.isGloballyVisible(entry.getKey())) {
+                    ++deferred; //last frame was too long, skip invisible work, it catches up by frame time later
+                    continue;
+                }
+                if (!entry.getValue().tick(_frameTime))
+                    it.remove();
             }
-        });
+        } finally {
+            _tickingAnimations = false;
+        }
+        if (deferred > 0)
+            _frameStats.addDeferred(deferred);
+
+        for(Element el : _elementUpdatersStop) //avoid concurrent modification (element can call stopAnimation at any time
+            _elementUpdaters.remove(el);
+        _elementUpdatersStop.clear();
+        _elementUpdaters.putAll(_elementUpdatersStart);
+        _elementUpdatersStart.clear();
+    }
+
+    @Override
+    public long getFrameTime() {
+        return _frameTime != 0? _frameTime: SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public ArgumentsPool getArgumentsPool() {
+        return _argumentsPool;
+    }
+
+    @Override
+    public CacheEngine getCacheEngine() {
+        return _cacheEngine;
     }
 
-    private Rect popDirtyRect() {
+    public FrameStats getFrameStats() {
+        return _frameStats;
+    }
+
+    private DamageRegion popDamage() {
         Element root = _rootElement;
-        if (root == null || _updatedElements.isEmpty() || _renderer == null)
+        if (root == null || _renderer == null)
             return null;
 
-        //Log.v(TAG, "popDirtyRect: " + _updatedElements.size() + " elements");
+        //Log.v(TAG, "popDamage: " + _updatedElements.size() + " elements");
         final Rect clipRect = _surfaceGeometry;
-        Rect combinedRect = new Rect();
-        for(Element el : _updatedElements) {
-            Rect elementRect = el.getRedrawRect(clipRect);
-            combinedRect.union(elementRect);
+        DamageRegion damage = _damage;
+        damage.clear();
+        synchronized (_updatedElements) {
+            if (_updatedElements.isEmpty())
+                return null;
+            for(Element el : _updatedElements)
+                damage.add(el.getRedrawRect(clipRect));
+            _updatedElements.clear();
         }
-        _updatedElements.clear();
-        return !combinedRect.isEmpty()? combinedRect: null;
+        return !damage.isEmpty()? damage: null;
     }
 
-    public Future<Boolean> sendEvent(final String keyName, final KeyEvent event) {
-        return _executor.submit(() -> {
-            try {
-                boolean r = _rootElement != null && _rootElement.sendEvent(keyName, event);
-                Log.v(TAG, "key processed = " + r);
-                return r;
-            } catch(Exception e) {
-                Log.e(TAG, "key handler failed", e);
-                return false;
-            }
-        });
+    public InputDispatcher getInputDispatcher() {
+        return _inputDispatcher;
     }
 
-    public Future<Boolean> sendEvent(final MotionEvent event) {
-        final int eventId;
-        if (event.getAction() == MotionEvent.ACTION_DOWN) {
-            synchronized (this) {
-                eventId = ++_eventId;
-            }
-        } else {
-            synchronized (this) {
-                eventId = _eventId;
-            }
+    //script thread, called by InputDispatcher, event may be null for back gesture
+    @Override
+    public boolean processKeyEvent(final String keyName, final KeyEvent event) {
+        try {
+            boolean r = _rootElement != null && _rootElement.sendEvent(keyName, event);
+            Log.v(TAG, "key processed = " + r);
+            return r;
+        } catch(Exception e) {
+            Log.e(TAG, "key handler failed", e);
+            return false;
         }
-        return _executor.submit(() -> {
-            try {
+    }
+
+    //script thread, called by InputDispatcher
+    @Override
+    public boolean processTouchEvent(int eventId, final MotionEvent event) {
+        trackVelocity(event);
+        try {
+            if (Log.isLoggable(TAG, Log.VERBOSE))
                 Log.v(TAG,"touch coordinates " + event.getX() + ", " + event.getY() + ", id: " + eventId);
-                return _rootElement != null && _rootElement.sendEvent(eventId, (int) event.getX(), (int) event.getY(), event);
-            } catch(Exception e) {
-                Log.e(TAG, "click handler failed", e);
-                return false;
-            }
-        });
+            return _rootElement != null && _rootElement.sendEvent(eventId, (int) event.getX(), (int) event.getY(), event);
+        } catch(Exception e) {
+            Log.e(TAG, "click handler failed", e);
+            return false;
+        }
+    }
+
+    //coalesced move events carry all skipped samples as history, tracker uses them all
+    private void trackVelocity(MotionEvent event) {
+        if (_velocityTracker == null) {
+            _velocityTracker = VelocityTracker.obtain();
+            _maxFlingVelocity = ViewConfiguration.get(this).getScaledMaximumFlingVelocity();
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN)
+            _velocityTracker.clear();
+        _velocityTracker.addMovement(event);
+        if (event.getActionMasked() == MotionEvent.ACTION_UP)
+            _velocityTracker.computeCurrentVelocity(1000, _maxFlingVelocity);
+    }
+
+    @Override
+    public void getTouchVelocity(PointF velocity) {
+        if (_velocityTracker != null)
+            velocity.set(_velocityTracker.getXVelocity(), _velocityTracker.getYVelocity());
+        else
+            velocity.set(0, 0);
+    }
+
+    @Override
+    public void scheduleScroll(Element el) {
+        _pendingScrolls.add(el);
+        paint();
+    }
+
+    private void flushScrolls() {
+        //scroll handlers may scroll again, those are delivered next frame
+        int n = _pendingScrolls.size();
+        for(int i = 0; i < n; ++i)
+            Elements.flushScroll(_pendingScrolls.get(i));
+        _pendingScrolls.subList(0, n).clear();
     }
 
     @Override
@@ -0,0 +1,172 @@
+package com.pureqml.android;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+
+import com.pureqml.android.runtime.DamageRegion;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+//second stage of software rendering: script thread records frame into Picture, this thread rasterizes it and posts to surface
+//frames are recycled, FrameCount of them gives triple buffering: one rasterized, one queued, one being recorded
+final class FrameRenderer implements Runnable {
+    private static final String TAG = "FrameRenderer";
+    static final int FrameCount = 3;
+    private static final float AverageWeight = 0.1f;
+
+    interface Listener {
+        void onFullRedrawNeeded(); //called on render thread, surface expanded locked rect beyond recorded area
+        void onFrameRendered(Frame frame); //called on render thread, frame was posted or dropped
+    }
+
+    static final class Frame {
+        final Picture       picture = new Picture();
+        final Rect          recorded = new Rect(); //area with complete content, everything else may be culled
+        final Rect[]        rects = new Rect[DamageRegion.DefaultMaxRects];
+        int                 rectCount;
+        SurfaceHolder       holder;
+        int                 fence; //bitmap pool frame it was recorded in
+
+        Frame() {
+            for(int i = 0; i < rects.length; ++i)
+                rects[i] = new Rect();
+        }
+
+        void addRect(Rect rect) {
+            if (rectCount < rects.length)
+                rects[rectCount++].set(rect);
+            else
+                rects[rects.length - 1].union(rect);
+        }
+    }
+
+    private final Listener                      _listener;
+    private final ArrayBlockingQueue<Frame>     _free = new ArrayBlockingQueue<>(FrameCount);
+    private final ArrayBlockingQueue<Frame>     _queued = new ArrayBlockingQueue<>(FrameCount);
+    private final Thread                        _thread;
+    private volatile boolean                    _running = true;
+    private final Rect                          _lockRect = new Rect();
+    private final Paint                         _clearPaint = new Paint();
+
+    //stats, written on render thread
+    private volatile long                       _frames;
+    private volatile long                       _fullRedraws;
+    private volatile float                      _averageRasterNanos;
+    private long                                _backPressure; //written on script thread
+
+    FrameRenderer(Listener listener) {
+        _listener = listener;
+        _clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        for(int i = 0; i < FrameCount; ++i)
+            _free.add(new Frame());
+        _thread = new Thread(this, "FrameRenderer");
+        _thread.start();
+    }
+
+    //returns free frame for recording or null if render thread is behind, caller keeps accumulating damage
+    Frame obtainFrame() {
+        Frame frame = _free.poll();
+        if (frame == null) {
+            ++_backPressure;
+            return null;
+        }
+        frame.rectCount = 0;
+        frame.recorded.setEmpty();
+        frame.holder = null;
+        return frame;
+    }
+
+    //returns unused frame without rendering
+    void recycle(Frame frame) {
+        frame.holder = null;
+        _free.offer(frame);
+    }
+
+    void submit(Frame frame) {
+        if (!_queued.offer(frame)) { //can't happen, there are no more frames than queue capacity
+            Log.w(TAG, "render queue is full, dropping frame");
+            _listener.onFrameRendered(frame);
+            recycle(frame);
+        }
+    }
+
+    @Override
+    public void run() {
+        Log.i(TAG, "render thread started");
+        while(_running) {
+            Frame frame;
+            try {
+                frame = _queued.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                render(frame);
+            } catch (Exception e) {
+                Log.e(TAG, "render failed", e);
+            } finally {
+                _listener.onFrameRendered(frame);
+                recycle(frame);
+            }
+        }
+        Log.i(TAG, "render thread finished");
+    }
+
+    private void render(Frame frame) {
+        final SurfaceHolder holder = frame.holder;
+        if (holder == null || holder.getSurface() == null || !holder.getSurface().isValid())
+            return;
+
+        long started = System.nanoTime();
+        boolean fullRedraw = false;
+        for(int i = 0; i < frame.rectCount; ++i) {
+            Rect rect = _lockRect;
+            rect.set(frame.rects[i]);
+            Canvas canvas = holder.lockCanvas(rect);
+            if (canvas == null)
+                continue;
+            try {
+                if (!frame.recorded.contains(rect))
+                    fullRedraw = true; //buffer lost its content, culled parts are missing from this frame
+                canvas.drawRect(rect, _clearPaint);
+                canvas.drawPicture(frame.picture);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        _averageRasterNanos += (elapsed - _averageRasterNanos) * AverageWeight;
+        ++_frames;
+
+        if (fullRedraw) {
+            ++_fullRedraws;
+            _listener.onFullRedrawNeeded();
+        }
+    }
+
+    void discard() {
+        _running = false;
+        _thread.interrupt();
+        try {
+            _thread.join(1000);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "interrupted while waiting for render thread", e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "rendered: %d, back pressure: %d, full redraws: %d, avg raster %.2fms",
+                _frames, _backPressure, _fullRedraws, _averageRasterNanos / 1000000.0f);
+    }
+}
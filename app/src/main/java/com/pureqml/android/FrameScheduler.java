@@ -0,0 +1,73 @@
+package com.pureqml.android;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+
+//vsync source for the script thread: coalesces frame requests and forwards display frame timestamps
+final class FrameScheduler implements Choreographer.FrameCallback {
+    private static final String TAG = "FrameScheduler";
+
+    interface Callback {
+        void onFrame(long frameTimeNanos); //called on vsync thread, must not block
+    }
+
+    private final Callback      _callback;
+    private HandlerThread       _thread;
+    private Handler             _handler;
+    private Choreographer       _choreographer; //owned by _thread
+    private boolean             _requested;
+
+    private final Runnable      _postFrameCallback = new SafeRunnable() {
+        @Override
+        public void doRun() {
+            if (_choreographer == null)
+                _choreographer = Choreographer.getInstance();
+            _choreographer.postFrameCallback(FrameScheduler.this);
+        }
+    };
+
+    FrameScheduler(Callback callback) {
+        _callback = callback;
+        Log.i(TAG, "starting vsync thread...");
+        _thread = new HandlerThread("FrameScheduler");
+        _thread.start();
+        _handler = new Handler(_thread.getLooper());
+    }
+
+    //requests one frame callback on the next vsync, repeated requests before it fires are coalesced
+    void requestFrame() {
+        Handler handler;
+        synchronized (this) {
+            if (_requested || _handler == null)
+                return;
+            _requested = true;
+            handler = _handler;
+        }
+        handler.post(_postFrameCallback);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (this) {
+            _requested = false;
+        }
+        try {
+            _callback.onFrame(frameTimeNanos);
+        } catch (Exception ex) {
+            Log.e(TAG, "frame callback failed", ex);
+        }
+    }
+
+    void discard() {
+        HandlerThread thread;
+        synchronized (this) {
+            thread = _thread;
+            _thread = null;
+            _handler = null;
+        }
+        if (thread != null)
+            thread.quitSafely();
+    }
+}
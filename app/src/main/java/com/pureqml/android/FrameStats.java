@@ -0,0 +1,65 @@
+package com.pureqml.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+//per-frame timing of the script thread frame loop, written on script thread only
+public final class FrameStats {
+    public static final int StageScript = 0;
+    public static final int StageLayout = 1;
+    public static final int StagePaint  = 2;
+    public static final int StagePost   = 3;
+    private static final int StageCount = 4;
+
+    private static final float AverageWeight = 0.1f;
+
+    private final long[]    _last = new long[StageCount];
+    private final float[]   _average = new float[StageCount];
+    private long            _stageStarted;
+    private long            _frameStarted;
+    private long            _lastFrameNanos;
+    private long            _frames;
+    private long            _longFrames;
+    private long            _deferredTasks;
+
+    void beginFrame() {
+        for(int i = 0; i < StageCount; ++i)
+            _last[i] = 0;
+        _frameStarted = _stageStarted = System.nanoTime();
+    }
+
+    //accounts time since previous mark to given stage
+    void mark(int stage) {
+        long now = System.nanoTime();
+        _last[stage] += now - _stageStarted;
+        _stageStarted = now;
+    }
+
+    void endFrame(long budgetNanos) {
+        _lastFrameNanos = System.nanoTime() - _frameStarted;
+        ++_frames;
+        if (_lastFrameNanos > budgetNanos)
+            ++_longFrames;
+        for(int i = 0; i < StageCount; ++i)
+            _average[i] += (_last[i] - _average[i]) * AverageWeight;
+    }
+
+    void addDeferred(int n) { _deferredTasks += n; }
+
+    public long getFrames()                 { return _frames; }
+    public long getLongFrames()             { return _longFrames; }
+    public long getDeferredTasks()          { return _deferredTasks; }
+    public long getLastFrameNanos()         { return _lastFrameNanos; }
+    public long getLastStageNanos(int stage)        { return _last[stage]; }
+    public float getAverageStageMillis(int stage)   { return _average[stage] / 1000000.0f; }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "frames: %d, long: %d, deferred: %d, avg script %.2fms, layout %.2fms, paint %.2fms, post %.2fms",
+                _frames, _longFrames, _deferredTasks,
+                getAverageStageMillis(StageScript), getAverageStageMillis(StageLayout),
+                getAverageStageMillis(StagePaint), getAverageStageMillis(StagePost));
+    }
+}
@@ -2,6 +2,7 @@ package com.pureqml.android;
 
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.util.DisplayMetrics;
@@ -12,8 +13,11 @@ import com.eclipsesource.v8.V8;
 import com.eclipsesource.v8.V8Array;
 import com.eclipsesource.v8.V8Function;
 import com.eclipsesource.v8.V8Object;
+import com.pureqml.android.runtime.ArgumentsPool;
 import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.CacheEngine;
 import com.pureqml.android.runtime.Element;
+import com.pureqml.android.runtime.ImagePrefetcher;
 
 import java.util.concurrent.ExecutorService;
 
@@ -28,6 +32,7 @@ public interface IExecutionEnvironment {
     Rect getSurfaceGeometry();
 
     V8 getRuntime();
+    ArgumentsPool getArgumentsPool(); //script thread only
 
     int nextObjectId();
     BaseObject getObjectById(int id);
@@ -39,12 +44,17 @@ public interface IExecutionEnvironment {
     void invokeVoidCallback(V8Function callback, V8Object receiver, V8Array arguments);
     void update(Element el);
 
+    CacheEngine getCacheEngine();
+    long getFrameTime(); //timestamp of current frame, SystemClock.uptimeMillis() time base
     void startAnimation(Element el, float seconds);
     void stopAnimation(Element el);
+    void scheduleScroll(Element el); //element's scroll event is emitted once at the beginning of next frame
+    void getTouchVelocity(PointF velocity); //velocity of last finished touch gesture, px/s
 
     //image loader api
     AssetManager getAssets();
     ImageLoader getImageLoader();
+    ImagePrefetcher getImagePrefetcher();
 
     void register(IResource res);
 
@@ -2,6 +2,7 @@ package com.pureqml.android;
 
 import android.graphics.Rect;
 import android.util.DisplayMetrics;
+import android.view.KeyEvent;
 
 public interface IRenderer {
     DisplayMetrics getDisplayMetrics();
@@ -10,5 +11,6 @@ public interface IRenderer {
     void setFullScreen(boolean enable);
     void lockOrientation(String orientation);
     void closeApp();
+    void dispatchKeyToSystem(KeyEvent event); //UI thread, default handling of key script did not handle
     String getIntentParam(String text);
 }
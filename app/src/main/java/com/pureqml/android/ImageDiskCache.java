@@ -0,0 +1,359 @@
+package com.pureqml.android;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//original bytes of network images with their http validators, size bounded lru on disk
+//every entry is written to temporary file, synced and renamed, and only then recorded in append-only journal,
+//so after crash journal never points to partial file; index is read from journal on first use, on loader thread
+final class ImageDiskCache {
+    private static final String TAG = "ImageDiskCache";
+    private static final String Journal = "journal";
+    private static final String JournalTmp = "journal.tmp";
+    private static final String Version = "1";
+    private static final String Put = "PUT";
+    private static final String Read = "READ";
+    private static final String Remove = "DEL";
+
+    static final class Entry {
+        final String    key;
+        long            size;
+        String          etag;           //validators for conditional request, may be null
+        String          lastModified;
+        long            expires;        //System.currentTimeMillis() until entry is fresh without revalidation
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+    }
+
+    private final File                                _dir;
+    private final long                                _maxSize;
+    private final LinkedHashMap<String, Entry>        _entries = new LinkedHashMap<>(64, 0.75f, true); //access order
+    private long                                      _size;
+    private Writer                                    _journal;
+    private int                                       _redundantRecords; //journal records superseded by later ones
+    private boolean                                   _loaded;
+
+    ImageDiskCache(File dir, long maxSize) {
+        _dir = dir;
+        _maxSize = maxSize;
+    }
+
+    static String getKey(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for(byte b : digest)
+                key.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    File getFile(Entry entry) {
+        return new File(_dir, entry.key);
+    }
+
+    //returns copy of entry, so validators can be read without lock, null if url was not cached
+    synchronized Entry get(String key) {
+        if (!load())
+            return null;
+        Entry entry = _entries.get(key);
+        if (entry == null)
+            return null;
+        if (!getFile(entry).exists()) {
+            remove(entry);
+            return null;
+        }
+        record(Read, entry);
+        Entry copy = new Entry(key);
+        copy.size = entry.size;
+        copy.etag = entry.etag;
+        copy.lastModified = entry.lastModified;
+        copy.expires = entry.expires;
+        return copy;
+    }
+
+    //stores image body, replacing previous version of the entry
+    void put(String key, byte[] data, String etag, String lastModified, long expires) {
+        File tmp = new File(_dir, key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            synchronized (this) {
+                if (!load())
+                    return;
+            }
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(data);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            synchronized (this) {
+                if (!tmp.renameTo(new File(_dir, key)))
+                    throw new IOException("rename failed");
+                Entry entry = _entries.get(key);
+                if (entry != null) {
+                    _size -= entry.size;
+                    ++_redundantRecords;
+                } else {
+                    entry = new Entry(key);
+                    _entries.put(key, entry);
+                }
+                entry.size = data.length;
+                entry.etag = etag;
+                entry.lastModified = lastModified;
+                entry.expires = expires;
+                _size += data.length;
+                record(Put, entry);
+                trim();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "storing " + key + " failed", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    //revalidated entry stays as it is with new expiration time
+    synchronized void touch(String key, long expires) {
+        Entry entry = _entries.get(key);
+        if (entry == null)
+            return;
+        entry.expires = expires;
+        ++_redundantRecords;
+        record(Put, entry);
+    }
+
+    synchronized void remove(String key) {
+        Entry entry = _entries.get(key);
+        if (entry != null)
+            remove(entry);
+    }
+
+    private void remove(Entry entry) {
+        _entries.remove(entry.key);
+        _size -= entry.size;
+        //noinspection ResultOfMethodCallIgnored
+        getFile(entry).delete();
+        ++_redundantRecords;
+        record(Remove, entry);
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = _entries.entrySet().iterator();
+        while (_size > _maxSize && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            _size -= entry.size;
+            //noinspection ResultOfMethodCallIgnored
+            getFile(entry).delete();
+            ++_redundantRecords;
+            record(Remove, entry);
+        }
+        if (_redundantRecords >= 2000 && _redundantRecords >= _entries.size())
+            rebuildJournal();
+    }
+
+    private void record(String op, Entry entry) {
+        if (_journal == null)
+            return;
+        try {
+            write(_journal, op, entry);
+            if (op.equals(Read))
+                ++_redundantRecords; //reads only affect eviction order, they may be lost
+            else
+                _journal.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "journal write failed, disabling cache", e);
+            closeJournal();
+        }
+    }
+
+    private static void write(Writer writer, String op, Entry entry) throws IOException {
+        writer.write(op);
+        writer.write(' ');
+        writer.write(entry.key);
+        if (op.equals(Put)) {
+            writer.write(' ');
+            writer.write(Long.toString(entry.size));
+            writer.write(' ');
+            writer.write(encode(entry.etag));
+            writer.write(' ');
+            writer.write(encode(entry.lastModified));
+            writer.write(' ');
+            writer.write(Long.toString(entry.expires));
+        }
+        writer.write('\n');
+    }
+
+    //reads index from journal once, returns false if cache is not usable
+    private boolean load() {
+        if (_loaded)
+            return _journal != null;
+        _loaded = true;
+
+        if (!_dir.isDirectory() && !_dir.mkdirs()) {
+            Log.w(TAG, "can't create " + _dir);
+            return false;
+        }
+
+        File journal = new File(_dir, Journal);
+        if (journal.exists()) {
+            try {
+                readJournal(journal);
+            } catch (Exception e) {
+                Log.w(TAG, "journal is corrupted, clearing cache", e);
+                _entries.clear();
+                _size = 0;
+            }
+        }
+
+        //files not listed in journal are leftovers of interrupted writes or lost records
+        String[] files = _dir.list();
+        if (files != null) {
+            for(String name : files) {
+                if (!name.equals(Journal) && !_entries.containsKey(name)) {
+                    //noinspection ResultOfMethodCallIgnored
+                    new File(_dir, name).delete();
+                }
+            }
+        }
+
+        rebuildJournal();
+        if (_journal != null)
+            trim();
+        Log.i(TAG, "loaded " + _entries.size() + " entries, " + _size + " bytes");
+        return _journal != null;
+    }
+
+    private void readJournal(File journal) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8));
+        try {
+            if (!Version.equals(reader.readLine()))
+                throw new IOException("unsupported journal version");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                if (fields.length < 2)
+                    break; //last line was not completely written
+                String key = fields[1];
+                switch (fields[0]) {
+                    case Put: {
+                        if (fields.length != 6)
+                            break;
+                        Entry entry = _entries.get(key);
+                        if (entry != null)
+                            _size -= entry.size;
+                        else {
+                            entry = new Entry(key);
+                            _entries.put(key, entry);
+                        }
+                        entry.size = Long.parseLong(fields[2]);
+                        entry.etag = decode(fields[3]);
+                        entry.lastModified = decode(fields[4]);
+                        entry.expires = Long.parseLong(fields[5]);
+                        _size += entry.size;
+                        break;
+                    }
+                    case Read:
+                        _entries.get(key); //updates access order
+                        break;
+                    case Remove: {
+                        Entry entry = _entries.remove(key);
+                        if (entry != null)
+                            _size -= entry.size;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    //writes compact journal with current entries in access order and replaces old one atomically
+    private void rebuildJournal() {
+        closeJournal();
+        File tmp = new File(_dir, JournalTmp);
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                writer.write(Version);
+                writer.write('\n');
+                for(Entry entry : _entries.values())
+                    write(writer, Put, entry);
+                writer.flush();
+                out.getFD().sync();
+            } finally {
+                writer.close();
+            }
+            if (!tmp.renameTo(new File(_dir, Journal)))
+                throw new IOException("rename failed");
+            _journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(_dir, Journal), true), StandardCharsets.UTF_8));
+            _redundantRecords = 0;
+        } catch (IOException e) {
+            Log.w(TAG, "journal rebuild failed, disabling cache", e);
+            closeJournal();
+        }
+    }
+
+    private void closeJournal() {
+        if (_journal != null) {
+            try {
+                _journal.close();
+            } catch (IOException e) {
+                Log.w(TAG, "closing journal failed", e);
+            }
+            _journal = null;
+        }
+    }
+
+    synchronized long getSize() {
+        return _size;
+    }
+
+    synchronized void flush() {
+        if (_journal != null) {
+            try {
+                _journal.flush();
+            } catch (IOException e) {
+                Log.w(TAG, "journal flush failed", e);
+            }
+        }
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return value != null? URLEncoder.encode(value, "UTF-8"): "-";
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException {
+        return value.equals("-")? null: URLDecoder.decode(value, "UTF-8");
+    }
+}
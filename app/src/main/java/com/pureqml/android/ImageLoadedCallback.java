@@ -5,5 +5,5 @@ import android.graphics.Bitmap;
 import java.net.URI;
 
 public interface ImageLoadedCallback {
-    void onImageLoaded(URI url, Bitmap bitmap);
+    void onImageLoaded(URI url, Bitmap bitmap, int width, int height); //width and height of source image, bitmap may be downsampled
 }
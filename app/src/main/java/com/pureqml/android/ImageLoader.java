@@ -3,7 +3,6 @@ package com.pureqml.android;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.drawable.PictureDrawable;
 import android.util.Log;
 import android.util.LruCache;
 
@@ -12,63 +11,146 @@ import androidx.annotation.Nullable;
 import com.caverock.androidsvg.SVG;
 import com.caverock.androidsvg.SVGParseException;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.concurrent.ExecutorService;
 
 public final class ImageLoader {
     public static final String TAG = "ImageLoader";
     public static final int CacheSize = 64 * 1024 * 1024;
+    public static final long DiskCacheSize = 100 * 1024 * 1024;
+    public static final long PoolSize = 16 * 1024 * 1024;
+    private static final long MaxHeuristicFreshness = 24 * 3600 * 1000; //ms, for responses with Last-Modified only
+    private static final int MinBucket = 64;
+
+    //lower value loads first, see ImageScheduler
+    public static final int PriorityVisible = ImageScheduler.PriorityVisible;
+    public static final int PriorityPrefetch = ImageScheduler.PriorityPrefetch;
+    public static final int PriorityNearby = ImageScheduler.PriorityNearby;
+    public static final int PriorityHidden = ImageScheduler.PriorityHidden;
 
     private final IExecutionEnvironment   _env;
-    private final ExecutorService         _threadPool;
+    private final ImageScheduler          _scheduler = new ImageScheduler();
+    private final ImageDiskCache          _diskCache;
+    private final BitmapPool              _pool = new BitmapPool(PoolSize);
 
     private final HashMap<URI, CallbackHolder> _callbacks = new HashMap<>();
-    private final LruCache<URI, ImageHolder> _cache = new LruCache<URI, ImageHolder>(CacheSize) {
+    private final LruCache<Key, ImageHolder> _cache = new LruCache<Key, ImageHolder>(CacheSize) {
         @Override
-        protected int sizeOf(URI key, ImageHolder value) {
+        protected int sizeOf(Key key, ImageHolder value) {
             return value.byteCount();
         }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Key key, ImageHolder oldValue, ImageHolder newValue) {
+            //unfinished holder is removed by its own task to be accounted again, it holds no reference yet
+            if (oldValue != newValue && oldValue.isFinished())
+                _pool.release(oldValue.getBitmap());
+        }
     };
+    private final Key                     _lookupKey = new Key(null, 0, 0); //guarded by _cache, never stored
+    private final HashMap<Key, ImageLoaderTask> _tasks = new HashMap<>(); //queued or running, guarded by _cache
+
+    //image of the same url is decoded once per size bucket, zero bucket is full size
+    private static final class Key {
+        URI     url;
+        int     width;
+        int     height;
+
+        Key(URI url, int width, int height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key)o;
+            return width == key.width && height == key.height && url.equals(key.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return (url.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+
+    //next power of two, so elements of similar size share decoded bitmap
+    private static int getBucket(int size) {
+        if (size <= 0)
+            return 0;
+        int bucket = MinBucket;
+        while (bucket < size)
+            bucket <<= 1;
+        return bucket;
+    }
 
     public ImageLoader(IExecutionEnvironment env) {
         _env = env;
-        _threadPool = env.getThreadPool();
+        _diskCache = new ImageDiskCache(new File(env.getContext().getCacheDir(), "images"), DiskCacheSize); //index is loaded by first task
+    }
+
+    private static ImageHolder createHolder(Key key) {
+        String stringUrl = key.url.toString();
+        String svgFileFormat = "svg";
+        if (stringUrl.contains(".") && svgFileFormat.equalsIgnoreCase(stringUrl.substring(stringUrl.lastIndexOf(".") + 1))) {
+            return new ImageVectorHolder(key);
+        } else {
+            return new ImageStaticHolder(key);
+        }
     }
 
-    private ImageHolder getHolder(URI url) {
+    //width and height are size of image on screen, 0 requests full size
+    //priority of pending task is raised if image is requested with lower value, it's never lowered here
+    private ImageHolder getHolder(URI url, int width, int height, int priority) {
+        width = getBucket(width);
+        height = getBucket(height);
+        if (width == 0 || height == 0)
+            width = height = 0;
         synchronized (_cache) {
-            ImageHolder holder = _cache.get(url);
+            Key lookup = _lookupKey;
+            lookup.url = url;
+            lookup.width = width;
+            lookup.height = height;
+            ImageHolder holder = _cache.get(lookup);
+            ImageLoaderTask pending = holder != null && !holder.isFinished()? _tasks.get(lookup): null;
+            lookup.url = null;
             if (holder == null) {
-                String stringUrl = url.toString();
-                String svgFileFormat = "svg";
-                if (stringUrl.contains(".") && svgFileFormat.equalsIgnoreCase(stringUrl.substring(stringUrl.lastIndexOf(".") + 1))) {
-                    holder = new ImageVectorHolder(url);
-                } else {
-                    holder = new ImageStaticHolder(url);
-                }
-                _cache.put(url, holder);
+                Key key = new Key(url, width, height);
+                holder = createHolder(key);
+                _cache.put(key, holder);
                 Log.v(TAG, "cache size: " + _cache.size());
-                _threadPool.execute(new ImageLoaderTask(url, holder));
-            }
+                ImageLoaderTask task = new ImageLoaderTask(key, holder);
+                _tasks.put(key, task);
+                _scheduler.fetch(task, priority);
+            } else if (pending != null && priority < pending.priority)
+                _scheduler.setPriority(pending, priority);
             return holder;
         }
     }
 
     private static class CallbackHolder {
         private final HashSet<WeakReference<ImageLoadedCallback>> _callbacks = new HashSet<>();
+        Key _latest; //last decoded size of the url, shown while other size is being decoded, guarded by _cache
         public void subscribe(ImageLoadedCallback callback) {
             synchronized (_callbacks) {
                 _callbacks.add(new WeakReference<>(callback));
             }
         }
-        public void unsubscribe(ImageLoadedCallback callback) {
+        //returns true if nobody is subscribed anymore
+        public boolean unsubscribe(ImageLoadedCallback callback) {
             synchronized (_callbacks) {
                 Iterator<WeakReference<ImageLoadedCallback>> it = _callbacks.iterator();
                 while (it.hasNext()) {
@@ -76,9 +158,10 @@ public final class ImageLoader {
                     if (el == null || el == callback)
                         it.remove();
                 }
+                return _callbacks.isEmpty();
             }
         }
-        void onImageLoaded(URI uri, Bitmap bitmap) {
+        void onImageLoaded(URI uri, Bitmap bitmap, int width, int height) {
             LinkedList<ImageLoadedCallback> callbacks = new LinkedList<>();
             synchronized (_callbacks) {
                 Iterator<WeakReference<ImageLoadedCallback>> it = _callbacks.iterator();
@@ -92,7 +175,7 @@ public final class ImageLoader {
             }
             for(ImageLoadedCallback callback : callbacks) {
                 try {
-                    callback.onImageLoaded(uri, bitmap);
+                    callback.onImageLoaded(uri, bitmap, width, height);
                 } catch (Exception ex) {
                     Log.w(TAG, "onImageLoaded " + uri + " failed", ex);
                 }
@@ -116,40 +199,132 @@ public final class ImageLoader {
         }
     }
 
-    public void subscribe(URI url, ImageLoadedCallback callback) {
+    //width and height of element showing the image, decoded bitmap may be smaller than source image if they are known
+    //priority is one of Priority* constants, offscreen elements add their distance to screen to PriorityNearby
+    public void subscribe(URI url, int width, int height, int priority, ImageLoadedCallback callback) {
         CallbackHolder callbacks = createCallbackHolder(url);
         callbacks.subscribe(callback);
-        ImageHolder holder = getHolder(url);
+        ImageHolder holder = getHolder(url, width, height, priority);
         Bitmap bitmap = holder.getBitmap();
         if (bitmap != null) {
-            callbacks.onImageLoaded(url, bitmap);
+            callbacks.onImageLoaded(url, bitmap, holder.getWidth(), holder.getHeight());
         }
     }
     public void unsubscribe(URI url, ImageLoadedCallback callback) {
         CallbackHolder holder = getCallbackHolder(url);
-        if (holder != null)
-            holder.unsubscribe(callback);
+        if (holder != null && holder.unsubscribe(callback))
+            cancel(url);
+    }
+
+    //pending loads of the url are dropped when nobody waits for them, sizes already decoded stay in memory cache
+    private void cancel(URI url) {
+        synchronized (_cache) {
+            Iterator<ImageLoaderTask> it = _tasks.values().iterator();
+            while (it.hasNext()) {
+                ImageLoaderTask task = it.next();
+                if (!task._url.equals(url))
+                    continue;
+                it.remove();
+                _scheduler.cancel(task);
+                if (!task._holder.isFinished() && _cache.get(task._key) == task._holder)
+                    _cache.remove(task._key); //next request schedules it again
+                Log.v(TAG, "cancelled loading " + url);
+            }
+        }
+    }
+
+    //moves pending loads of the url, e.g. when element showing it is hidden or is about to be scrolled into view
+    //returns false if nothing is pending
+    public boolean setPriority(URI url, int priority) {
+        boolean pending = false;
+        synchronized (_cache) {
+            for(ImageLoaderTask task : _tasks.values()) {
+                if (task._url.equals(url) && !task._holder.isFinished()) {
+                    _scheduler.setPriority(task, priority);
+                    pending = true;
+                }
+            }
+        }
+        return pending;
     }
 
     public Bitmap getBitmap(URI url) {
-        ImageHolder holder = getHolder(url);
-        return holder.getBitmap();
+        return getBitmap(url, 0, 0, PriorityVisible);
+    }
+
+    //every element drawing a bitmap holds a reference, so bitmap is not reused while it's painted
+    public void retainBitmap(Bitmap bitmap) {
+        _pool.retain(bitmap);
     }
 
-    private class ImageLoaderTask extends SafeRunnable {
-        final URI             _url;
-        final ImageHolder     _holder; //fixme: make me weak
+    public void releaseBitmap(Bitmap bitmap) {
+        _pool.release(bitmap);
+    }
+
+    void beginFrame() {
+        _pool.beginFrame();
+    }
+
+    BitmapPool getBitmapPool() {
+        return _pool;
+    }
+
+    ImageScheduler getScheduler() {
+        return _scheduler;
+    }
+
+    void discard() {
+        Log.i(TAG, "image scheduler: " + _scheduler);
+        _scheduler.shutdown();
+        synchronized (_cache) {
+            _tasks.clear();
+        }
+        _diskCache.flush();
+    }
+
+    //bitmap decoded for given size, or of another size of the same url until it's ready
+    //priority of element painting it, pending load is raised to it but never lowered
+    public Bitmap getBitmap(URI url, int width, int height, int priority) {
+        ImageHolder holder = getHolder(url, width, height, priority);
+        Bitmap bitmap = holder.getBitmap();
+        if (bitmap != null)
+            return bitmap;
+
+        CallbackHolder callbacks = getCallbackHolder(url);
+        if (callbacks == null)
+            return null;
+        synchronized (_cache) {
+            ImageHolder latest = callbacks._latest != null? _cache.get(callbacks._latest): null;
+            return latest != null? latest.getBitmap(): null;
+        }
+    }
 
-        public ImageLoaderTask(URI url, ImageHolder holder) {
-            _url = url;
+    //fetch step reads encoded image on fetch pool, decode step makes bitmap on decode pool;
+    //stale disk copy is shown first, then it's revalidated in background and changed image is decoded again
+    private class ImageLoaderTask extends ImageScheduler.Job {
+        private static final int Fetch          = 0;
+        private static final int Decode         = 1;
+        private static final int Revalidate     = 2;
+        private static final int DecodeChanged  = 3;
+
+        final Key                       _key;
+        final URI                       _url;
+        final ImageHolder               _holder; //fixme: make me weak
+        private int                     _step = Fetch;
+        private byte[]                  _data;
+        private ImageDiskCache.Entry    _cached;
+
+        public ImageLoaderTask(Key key, ImageHolder holder) {
+            _key = key;
+            _url = key.url;
             _holder = holder;
         }
 
         @Nullable
-        private Bitmap getNotifyBitmap() {
+        private Bitmap getNotifyBitmap(ImageHolder holder) {
             Bitmap bitmap = null;
             try {
-                bitmap = _holder.getBitmap();
+                bitmap = holder.getBitmap();
             } catch(Exception ex) {
                 Log.e(TAG, "getBitmap", ex);
             }
@@ -158,56 +333,268 @@ public final class ImageLoader {
 
         @Override
         public void doRun() {
+            switch(_step) {
+                case Fetch:
+                    fetchData();
+                    break;
+                case Decode:
+                    decode();
+                    break;
+                case Revalidate:
+                    revalidate();
+                    break;
+                case DecodeChanged:
+                    decodeChanged();
+                    break;
+            }
+        }
+
+        private void fetchData() {
             Log.i(TAG, "starting loading task on " + _url);
+            String scheme = _url.getScheme();
             try {
-                InputStream rawStream;
-                if (_url.getScheme().equals("file")) {
+                if (scheme.equals("file")) {
                     String path = _url.getPath();
                     int pos = 0;
                     while(pos < path.length() && path.charAt(pos) == '/')
                         ++pos;
-                    rawStream = _env.getAssets().open(path.substring(pos)); //strip leading slash
+                    _data = read(_env.getAssets().open(path.substring(pos))); //strip leading slash
+                } else if (scheme.equals("http") || scheme.equals("https")) {
+                    String key = ImageDiskCache.getKey(_url.toString());
+                    _cached = _diskCache.get(key);
+                    if (_cached != null) {
+                        try {
+                            _data = read(new FileInputStream(_diskCache.getFile(_cached)));
+                        } catch (IOException ex) {
+                            Log.w(TAG, "reading cached copy of " + _url + " failed, removing", ex);
+                            _diskCache.remove(key);
+                            _cached = null;
+                        }
+                    }
+                    if (_cached == null)
+                        _data = fetch(null).data;
                 } else
-                    rawStream = _url.toURL().openStream();
+                    _data = read(_url.toURL().openStream());
+            } catch(Exception ex) {
+                Log.e(TAG, "image loading failed", ex);
+            }
+
+            if (_data != null) {
+                _step = Decode;
+                _scheduler.decode(this);
+            } else {
+                publish(_holder); //finished without image
+                done();
+            }
+        }
+
+        private void decode() {
+            boolean loaded = false;
+            try {
+                loaded = _holder.load(_data, _pool);
+            } catch(Exception ex) {
+                Log.e(TAG, "image decoding failed", ex);
+            }
+            _data = null;
+
+            if (!loaded && _cached != null) {
+                Log.w(TAG, "cached copy of " + _url + " can't be decoded, removing");
+                _diskCache.remove(_cached.key);
+                _cached = null;
+                _step = Fetch;
+                _scheduler.fetch(this);
+                return;
+            }
+
+            publish(_holder);
+            Log.i(TAG, "finished loading task on " + _url);
+
+            if (_cached != null && !_cached.isFresh()) {
+                _step = Revalidate;
+                _scheduler.fetch(this, ImageScheduler.PriorityBackground);
+            } else
+                done();
+        }
+
+        private void done() {
+            synchronized (_cache) {
+                if (_tasks.get(_key) == this)
+                    _tasks.remove(_key);
+            }
+        }
+
+        //whole encoded image is read into memory, so its bounds can be decoded before pixels
+        private byte[] read(InputStream rawStream) throws IOException {
+            try {
+                ByteArrayOutputStream data = new ByteArrayOutputStream(Math.max(rawStream.available(), 16 * 1024));
+                byte[] buffer = new byte[16 * 1024];
+                int n;
+                while ((n = rawStream.read(buffer)) > 0)
+                    data.write(buffer, 0, n);
+                return data.toByteArray();
+            } finally {
+                rawStream.close();
+            }
+        }
+
+        //cancelled task does not publish, its holder is already removed from cache
+        private void publish(ImageHolder holder) {
+            if (cancelled)
+                return;
+            Bitmap bitmap;
+            CallbackHolder callbacks = getCallbackHolder(_url);
+            synchronized (_cache) {
+                _cache.remove(_key);
+                holder.finish();
+                bitmap = getNotifyBitmap(holder);
+                _pool.retain(bitmap); //reference of memory cache, released when entry is removed
+                _cache.put(_key, holder); //size is accounted again with decoded bitmap
+                if (callbacks != null && bitmap != null)
+                    callbacks._latest = _key;
+            }
+            if (callbacks != null)
+                callbacks.onImageLoaded(_url, bitmap, holder.getWidth(), holder.getHeight());
+            Log.v(TAG, "cache size: " + _cache.size());
+        }
+
+        //conditional request for stale disk copy, changed image replaces the one already shown
+        private void revalidate() {
+            try {
+                Response response = fetch(_cached);
+                if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    Log.v(TAG, _url + " not modified");
+                    _diskCache.touch(_cached.key, response.expires);
+                } else if (response.data != null) {
+                    Log.i(TAG, _url + " changed, reloading");
+                    if (response.expires < 0)
+                        _diskCache.remove(_cached.key); //must not be stored anymore
+                    _data = response.data;
+                    _step = DecodeChanged;
+                    _scheduler.decode(this);
+                    return;
+                }
+            } catch (Exception ex) {
+                Log.w(TAG, "revalidating " + _url + " failed", ex);
+            }
+            done();
+        }
+
+        private void decodeChanged() {
+            try {
+                ImageHolder holder = createHolder(_key);
+                if (holder.load(_data, _pool))
+                    publish(holder);
+            } catch (Exception ex) {
+                Log.w(TAG, "decoding changed " + _url + " failed", ex);
+            }
+            _data = null;
+            done();
+        }
+
+        //plain GET, or conditional one if validators are given; successful body is stored on disk
+        private Response fetch(ImageDiskCache.Entry validators) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) _url.toURL().openConnection();
+            connection.setUseCaches(false); //disk cache of images does its own validation
+            try {
+                if (validators != null) {
+                    if (validators.etag != null)
+                        connection.setRequestProperty("If-None-Match", validators.etag);
+                    if (validators.lastModified != null)
+                        connection.setRequestProperty("If-Modified-Since", validators.lastModified);
+                }
+
+                Response response = new Response();
+                response.code = connection.getResponseCode();
+                response.expires = getExpiration(connection);
+                if (response.code != HttpURLConnection.HTTP_OK) {
+                    if (response.code != HttpURLConnection.HTTP_NOT_MODIFIED)
+                        Log.w(TAG, "loading " + _url + " failed with code " + response.code);
+                    return response;
+                }
+
+                InputStream stream = connection.getInputStream();
                 try {
-                    _holder.load(rawStream);
+                    ByteArrayOutputStream data = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 16 * 1024));
+                    byte[] buffer = new byte[16 * 1024];
+                    int n;
+                    while ((n = stream.read(buffer)) > 0)
+                        data.write(buffer, 0, n);
+                    response.data = data.toByteArray();
                 } finally {
-                    rawStream.close();
+                    stream.close();
                 }
-            } catch(Exception ex) {
-                Log.e(TAG, "image loading failed", ex);
+
+                if (response.expires >= 0)
+                    _diskCache.put(ImageDiskCache.getKey(_url.toString()), response.data,
+                        connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), response.expires);
+                return response;
             } finally {
-                Bitmap bitmap;
-                synchronized (_cache) {
-                    _cache.remove(_url);
-                    _holder.finish();
-                    bitmap = getNotifyBitmap();
-                    _cache.put(_url, _holder);
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static final class Response {
+        int     code;
+        byte[]  data;
+        long    expires; //-1 if response must not be stored
+    }
+
+    //freshness lifetime of response as absolute time, same rules as http caches use
+    private static long getExpiration(HttpURLConnection connection) {
+        long now = System.currentTimeMillis();
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for(String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+                if (directive.equals("no-store"))
+                    return -1;
+                if (directive.equals("no-cache"))
+                    return 0;
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        return now + Long.parseLong(directive.substring(8).trim()) * 1000;
+                    } catch (NumberFormatException ex) {
+                        Log.w(TAG, "invalid " + directive);
+                    }
                 }
-                getCallbackHolder(_url).onImageLoaded(_url, bitmap);
-                Log.v(TAG, "cache size: " + _cache.size());
             }
-            Log.i(TAG, "finished loading task on " + _url);
         }
+        long expires = connection.getExpiration();
+        if (expires != 0)
+            return expires;
+        long lastModified = connection.getLastModified();
+        if (lastModified != 0 && lastModified < now)
+            return now + Math.min((now - lastModified) / 10, MaxHeuristicFreshness);
+        return 0;
     }
 
     private interface ImageHolder {
-        void load(InputStream stream);
+        boolean load(byte[] data, BitmapPool pool); //returns false if image can't be decoded
         Bitmap getBitmap();
+        int getWidth(); //size of source image, bitmap may be downsampled
+        int getHeight();
 
         int byteCount(); //LRUCache API
 
         void finish();
+        boolean isFinished();
     }
 
     private static abstract class BaseImageHolder implements ImageHolder
     {
         protected final URI                 _url;
+        protected final int                 _requestedWidth; //size bucket, 0 for full size
+        protected final int                 _requestedHeight;
         private boolean                     _finished;
         protected Bitmap                    _image;
+        protected int                       _width;
+        protected int                       _height;
 
-        BaseImageHolder(URI url) {
-            _url = url;
+        BaseImageHolder(Key key) {
+            _url = key.url;
+            _requestedWidth = key.width;
+            _requestedHeight = key.height;
         }
 
         @Override
@@ -221,20 +608,63 @@ public final class ImageLoader {
             }
         }
 
+        @Override
+        public synchronized boolean isFinished() { return _finished; }
+
+        @Override
+        public int getWidth() { return _width; }
+
+        @Override
+        public int getHeight() { return _height; }
+
         @Override
         public synchronized int byteCount() {
-            return _url.toString().length() * 4 + (_finished && _image != null? _image.getByteCount(): 0);
+            return _url.toString().length() * 4 + (_finished && _image != null? _image.getAllocationByteCount(): 0);
         }
     }
 
     private static class ImageStaticHolder extends BaseImageHolder {
-        ImageStaticHolder(URI url) {
-            super(url);
+        ImageStaticHolder(Key key) {
+            super(key);
+        }
+
+        //largest power of two keeping both sides not smaller than requested
+        static int getSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+            int sampleSize = 1;
+            if (requestedWidth <= 0 || requestedHeight <= 0)
+                return sampleSize;
+            while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight)
+                sampleSize *= 2;
+            return sampleSize;
         }
 
         @Override
-        public void load(InputStream stream) {
-            _image = BitmapFactory.decodeStream(new BufferedInputStream(stream));
+        public boolean load(byte[] data, BitmapPool pool) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0)
+                return false;
+            _width = options.outWidth;
+            _height = options.outHeight;
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = getSampleSize(_width, _height, _requestedWidth, _requestedHeight);
+            options.inMutable = true; //decoded bitmap may be reused later
+            long width = (_width + options.inSampleSize - 1) / options.inSampleSize;
+            long height = (_height + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = pool.get(width * height * 4);
+            try {
+                _image = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } catch (IllegalArgumentException ex) {
+                //pooled bitmap can't hold this image, e.g. it's decoded into other config
+                Log.v(TAG, "can't reuse bitmap for " + _url + ": " + ex);
+                options.inBitmap = null;
+                _image = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+            if (options.inSampleSize > 1 && _image != null)
+                Log.v(TAG, "decoded " + _url + " " + _width + "x" + _height + " as " + _image.getWidth() + "x" + _image.getHeight());
+            return _image != null;
         }
 
         @Nullable
@@ -245,42 +675,49 @@ public final class ImageLoader {
     }
 
     private static class ImageVectorHolder extends BaseImageHolder {
-        SVG     _svg;
-
-        ImageVectorHolder(URI url) {
-            super(url);
+        ImageVectorHolder(Key key) {
+            super(key);
         }
 
+        //rendered on loader thread, scaled to fit requested size
         @Override
-        public void load(InputStream stream) {
+        public boolean load(byte[] data, BitmapPool pool) {
+            SVG svg;
             try {
-                _svg = SVG.getFromInputStream(stream);
+                svg = SVG.getFromInputStream(new ByteArrayInputStream(data));
             } catch (SVGParseException e) {
                 Log.e(TAG, "loading vector image failed", e);
+                return false;
             }
-        }
-
-        @Nullable
-        @Override
-        public Bitmap getBitmap() {
-            synchronized (this) {
-                if (_svg == null)
-                    return null;
 
-                if (_image != null)
-                    return _image;
+            int documentWidth = (int)Math.ceil(svg.getDocumentWidth());
+            int documentHeight = (int)Math.ceil(svg.getDocumentHeight());
+            if (documentWidth <= 0 || documentHeight <= 0) {
+                Log.w(TAG, "vector image " + _url + " has no size");
+                return false;
             }
 
-            int documentWidth = (int)Math.ceil(_svg.getDocumentWidth());
-            int documentHeight = (int)Math.ceil(_svg.getDocumentHeight());
-            PictureDrawable pd = new PictureDrawable(_svg.renderToPicture(documentWidth, documentHeight));
-            Bitmap bitmap = Bitmap.createBitmap(documentWidth, documentHeight, Bitmap.Config.ARGB_8888);
+            float scale = 1;
+            if (_requestedWidth > 0 && _requestedHeight > 0)
+                scale = Math.min(1.0f * _requestedWidth / documentWidth, 1.0f * _requestedHeight / documentHeight);
+            Bitmap bitmap = Bitmap.createBitmap(
+                Math.max((int)Math.ceil(documentWidth * scale), 1), Math.max((int)Math.ceil(documentHeight * scale), 1),
+                Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bitmap);
-            _svg.renderToCanvas(canvas);
+            canvas.scale(scale, scale);
+            svg.renderToCanvas(canvas);
             synchronized (this) {
+                _width = documentWidth;
+                _height = documentHeight;
                 _image = bitmap;
-                return _image;
             }
+            return true;
+        }
+
+        @Nullable
+        @Override
+        public synchronized Bitmap getBitmap() {
+            return _image;
         }
     }
 }
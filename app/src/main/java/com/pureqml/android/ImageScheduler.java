@@ -0,0 +1,157 @@
+package com.pureqml.android;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//bounded thread pools of image pipeline: fetch stage reads encoded bytes from network, disk or assets, decode stage makes bitmaps
+//queued jobs run in priority order, lower value first, they can be reprioritized or cancelled until they start
+//queueing and reprioritization are done under scheduler lock, so priority never changes while job is in a queue
+final class ImageScheduler {
+    private static final String TAG = "ImageScheduler";
+
+    static final int PriorityVisible    = 0;                        //painted or intersecting screen
+    static final int PriorityPrefetch   = 1;                        //predicted to become visible, sooner first
+    static final int PriorityNearby     = 1 << 20;                  //offscreen, plus distance to screen in pixels
+    static final int PriorityHidden     = 1 << 24;                  //element is not globally visible
+    static final int PriorityBackground = Integer.MAX_VALUE - 1;    //revalidation of image already shown
+
+    private static final int FetchThreads = 4;
+    private static final int KeepAliveSeconds = 10;
+
+    abstract static class Job extends SafeRunnable implements Comparable<Job> {
+        volatile int    priority;   //written under scheduler lock once job was submitted
+        volatile boolean cancelled;
+        Stage           stage;      //stage job is queued or running in, guarded by scheduler lock
+        long            sequence;   //fifo order among jobs of equal priority
+        long            queueTime;
+
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority)
+                return priority < o.priority? -1: 1;
+            return Long.compare(sequence, o.sequence);
+        }
+
+        @Override
+        public final void run() {
+            Stage stage = this.stage;
+            long started = SystemClock.uptimeMillis();
+            stage.onStart(started - queueTime);
+            try {
+                if (!cancelled)
+                    super.run();
+            } finally {
+                stage.onFinish(SystemClock.uptimeMillis() - started);
+            }
+        }
+    }
+
+    static final class Stage {
+        final String                                _name;
+        final PriorityBlockingQueue<Runnable>       _queue = new PriorityBlockingQueue<>();
+        final ThreadPoolExecutor                    _executor;
+        final LatencyHistogram                      _wait;
+        final LatencyHistogram                      _run;
+        final AtomicInteger                         _running = new AtomicInteger();
+
+        Stage(String name, int threads) {
+            _name = name;
+            _wait = new LatencyHistogram(name + " wait");
+            _run = new LatencyHistogram(name + " run");
+            final AtomicInteger index = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "Image" + name + "-" + index.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1); //below script and render threads
+                return thread;
+            };
+            _executor = new ThreadPoolExecutor(threads, threads, KeepAliveSeconds, TimeUnit.SECONDS, _queue, factory);
+            _executor.allowCoreThreadTimeOut(true);
+        }
+
+        void onStart(long waited) {
+            _wait.record(waited);
+            _running.incrementAndGet();
+        }
+
+        void onFinish(long ran) {
+            _run.record(ran);
+            _running.decrementAndGet();
+        }
+
+        int getQueueDepth() { return _queue.size(); }
+        int getRunning()    { return _running.get(); }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return _name + " queued: " + getQueueDepth() + ", running: " + getRunning() + ", " + _wait + ", " + _run;
+        }
+    }
+
+    private long                _sequence; //guarded by this
+    private final Stage         _fetch = new Stage("Fetch", FetchThreads);
+    private final Stage         _decode = new Stage("Decode", Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 2)));
+
+    Stage getFetchStage()   { return _fetch; }
+    Stage getDecodeStage()  { return _decode; }
+
+    void fetch(Job job)     { submit(_fetch, job); }
+    void decode(Job job)    { submit(_decode, job); }
+
+    //queues job with new priority, e.g. next step of job which runs at different priority
+    synchronized void fetch(Job job, int priority) {
+        job.priority = priority;
+        submit(_fetch, job);
+    }
+
+    private synchronized void submit(Stage stage, Job job) {
+        if (job.cancelled)
+            return;
+        job.stage = stage;
+        job.sequence = ++_sequence;
+        job.queueTime = SystemClock.uptimeMillis();
+        if (stage._executor.isShutdown()) {
+            Log.w(TAG, "scheduler is shut down, dropping job");
+            return;
+        }
+        stage._executor.execute(job);
+    }
+
+    //queued job is moved to its new place, running job keeps priority for its next stage
+    synchronized void setPriority(Job job, int priority) {
+        if (job.priority == priority)
+            return;
+        Stage stage = job.stage;
+        if (stage != null && stage._queue.remove(job)) {
+            job.priority = priority;
+            stage._queue.add(job);
+        } else
+            job.priority = priority;
+    }
+
+    //returns true if job was still queued and will never run
+    synchronized boolean cancel(Job job) {
+        job.cancelled = true;
+        Stage stage = job.stage;
+        return stage != null && stage._queue.remove(job);
+    }
+
+    void shutdown() {
+        _fetch._executor.shutdownNow();
+        _decode._executor.shutdownNow();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return _fetch + "; " + _decode;
+    }
+}
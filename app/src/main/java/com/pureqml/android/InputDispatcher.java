@@ -0,0 +1,323 @@
+package com.pureqml.android;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+//asynchronous input path from UI thread to script thread, UI thread never waits for script
+//keys are consumed right away, the ones script does not handle are dispatched to the system afterwards,
+//so system never acts on a key script handled too
+final class InputDispatcher {
+    private static final String TAG = "InputDispatcher";
+    private static final int    QueueCapacity = 64;
+    private static final int    StatsLogInterval = 256;
+    static final String         BackKey = "Back";
+
+    private static final class Entry {
+        final int           eventId;
+        final MotionEvent   motion;  //own copy, recycled after dispatch
+        final KeyEvent      key;
+        final String        keyName;
+
+        Entry(int eventId, MotionEvent motion) {
+            this.eventId = eventId;
+            this.motion = motion;
+            this.key = null;
+            this.keyName = null;
+        }
+
+        Entry(String keyName, KeyEvent key) {
+            this.eventId = 0;
+            this.motion = null;
+            this.key = key;
+            this.keyName = keyName;
+        }
+
+        boolean isMove() {
+            return motion != null && motion.getActionMasked() == MotionEvent.ACTION_MOVE;
+        }
+
+        boolean isRepeat(int keyCode) {
+            return key != null && key.getKeyCode() == keyCode && key.getAction() == KeyEvent.ACTION_DOWN && key.getRepeatCount() > 0;
+        }
+
+        void recycle() {
+            if (motion != null)
+                motion.recycle();
+        }
+    }
+
+    //script side of dispatcher
+    interface Target {
+        ExecutorService getExecutor();
+        IRenderer getRenderer();
+        boolean processTouchEvent(int eventId, MotionEvent event);
+        boolean processKeyEvent(String keyName, KeyEvent event);
+    }
+
+    //press of a key, from down to up, UI thread only
+    private static final class KeyPress {
+        int         pending;    //downs queued for script
+        boolean     returned;   //first down was not handled and went to the system, the rest of the press follows it
+        KeyEvent    up;         //up waiting for pending downs
+    }
+
+    private final Target                    _target;
+    private final Executor                  _uiThread;
+    private final ArrayDeque<Entry>         _queue = new ArrayDeque<>(QueueCapacity);
+    private boolean                         _drainScheduled;
+    private int                             _eventId;
+    private final SparseArray<KeyPress>     _keyPresses = new SparseArray<>(); //by key code, UI thread only
+    private final LatencyHistogram          _touchLatency = new LatencyHistogram("touch");
+    private final LatencyHistogram          _keyLatency = new LatencyHistogram("key");
+    private long                            _coalesced;
+    private long                            _dropped;
+    private MotionEvent.PointerCoords[]     _coords = new MotionEvent.PointerCoords[0]; //scratch for appendBatch, guarded by this
+
+    InputDispatcher(Target target, Executor uiThread) {
+        _target = target;
+        _uiThread = uiThread;
+    }
+
+    //UI thread, returns true so the rest of the gesture is delivered to us as well
+    boolean dispatchTouch(MotionEvent event) {
+        int eventId;
+        synchronized (this) {
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN)
+                ++_eventId;
+            eventId = _eventId;
+        }
+        //android recycles event after listener returns, queue keeps its own copy
+        enqueue(new Entry(eventId, MotionEvent.obtain(event)));
+        return true;
+    }
+
+    //UI thread, returns true if key is consumed, keys script does not handle are passed to IRenderer.dispatchKeyToSystem later
+    boolean dispatchKeyDown(String keyName, KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        KeyPress press = _keyPresses.get(keyCode);
+        if (press == null || event.getRepeatCount() == 0) {
+            press = new KeyPress();
+            _keyPresses.put(keyCode, press);
+        } else if (press.returned && press.pending == 0)
+            return false; //script did not want this press, repeats go to the system directly
+
+        if (enqueue(new Entry(keyName, new KeyEvent(event))))
+            ++press.pending;
+        return true;
+    }
+
+    //UI thread, up is held until script handles all downs of the press, so the system gets it after returned down
+    boolean dispatchKeyUp(KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        KeyPress press = _keyPresses.get(keyCode);
+        if (press == null)
+            return false; //press started before us
+        if (press.pending > 0) {
+            press.up = new KeyEvent(event);
+            return true;
+        }
+        _keyPresses.remove(keyCode);
+        return !press.returned;
+    }
+
+    //back gesture without key event
+    void dispatchBack() {
+        enqueue(new Entry(BackKey, null));
+    }
+
+    //returns false if entry was coalesced or dropped
+    private boolean enqueue(Entry entry) {
+        boolean schedule;
+        synchronized (this) {
+            Entry last = _queue.peekLast();
+            if (last != null) {
+                if (entry.isMove() && last.isMove() && last.eventId == entry.eventId) {
+                    //script is still behind, samples are appended to queued move as history for velocity tracking
+                    ++_coalesced;
+                    if (appendBatch(last.motion, entry.motion)) {
+                        entry.recycle();
+                        return false;
+                    }
+                    _queue.pollLast().recycle();
+                } else if (entry.key != null && entry.key.getRepeatCount() > 0 && last.isRepeat(entry.key.getKeyCode())) {
+                    entry.recycle();
+                    ++_coalesced;
+                    return false;
+                }
+            }
+            if (_queue.size() >= QueueCapacity && !evictCoalescable()) {
+                Log.w(TAG, "input queue is full, dropping event");
+                entry.recycle();
+                ++_dropped;
+                return false;
+            }
+            _queue.addLast(entry);
+            schedule = !_drainScheduled;
+            _drainScheduled = true;
+        }
+        if (schedule) {
+            ExecutorService executor = _target.getExecutor();
+            if (executor == null || executor.isShutdown()) {
+                clear();
+                return false;
+            }
+            executor.execute(_drain);
+        }
+        return true;
+    }
+
+    //appends current and historical samples of src to target, pointers must be the same
+    private boolean appendBatch(MotionEvent target, MotionEvent src) {
+        int pointers = src.getPointerCount();
+        if (pointers != target.getPointerCount())
+            return false;
+        for(int p = 0; p < pointers; ++p) {
+            if (src.getPointerId(p) != target.getPointerId(p))
+                return false;
+        }
+
+        if (_coords.length < pointers) {
+            _coords = new MotionEvent.PointerCoords[pointers];
+            for(int p = 0; p < pointers; ++p)
+                _coords[p] = new MotionEvent.PointerCoords();
+        }
+
+        int history = src.getHistorySize();
+        for(int h = 0; h <= history; ++h) {
+            long time;
+            if (h < history) {
+                time = src.getHistoricalEventTime(h);
+                for(int p = 0; p < pointers; ++p)
+                    src.getHistoricalPointerCoords(p, h, _coords[p]);
+            } else {
+                time = src.getEventTime();
+                for(int p = 0; p < pointers; ++p)
+                    src.getPointerCoords(p, _coords[p]);
+            }
+            target.addBatch(time, _coords, src.getMetaState());
+        }
+        return true;
+    }
+
+    //drops oldest move or key repeat, down/up and key presses are kept
+    private boolean evictCoalescable() {
+        Iterator<Entry> it = _queue.iterator();
+        while(it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.isMove() || (entry.key != null && entry.key.getRepeatCount() > 0)) {
+                it.remove();
+                entry.recycle();
+                ++_dropped;
+                if (entry.key != null)
+                    onKeyDropped(entry.key.getKeyCode());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Entry poll() {
+        Entry entry = _queue.pollFirst();
+        if (entry == null)
+            _drainScheduled = false;
+        return entry;
+    }
+
+    private final SafeRunnable _drain = new SafeRunnable() {
+        @Override
+        public void doRun() {
+            Entry entry;
+            while((entry = poll()) != null) {
+                try {
+                    process(entry);
+                } finally {
+                    entry.recycle();
+                }
+            }
+        }
+    };
+
+    //script thread
+    private void process(Entry entry) {
+        if (entry.motion != null) {
+            _target.processTouchEvent(entry.eventId, entry.motion);
+            record(_touchLatency, entry.motion.getEventTime());
+            return;
+        }
+
+        boolean handled = _target.processKeyEvent(entry.keyName, entry.key);
+        if (!handled && BackKey.equals(entry.keyName)) {
+            //not returned to the system, it would come back as back gesture
+            Log.d(TAG, "back was not handled by script, closing app");
+            IRenderer renderer = _target.getRenderer();
+            if (renderer != null)
+                renderer.closeApp();
+            handled = true;
+        }
+
+        if (entry.key != null) {
+            record(_keyLatency, entry.key.getEventTime());
+            final KeyEvent key = entry.key;
+            final boolean result = handled;
+            _uiThread.execute(() -> onKeyProcessed(key, result));
+        }
+    }
+
+    //UI thread, result of script for queued down
+    private void onKeyProcessed(KeyEvent down, boolean handled) {
+        int keyCode = down.getKeyCode();
+        KeyPress press = _keyPresses.get(keyCode);
+        if (press == null)
+            return; //cleared
+
+        --press.pending;
+        if (down.getRepeatCount() == 0)
+            press.returned = !handled;
+        if (press.returned)
+            dispatchKeyToSystem(down);
+
+        if (press.pending == 0 && press.up != null) {
+            _keyPresses.remove(keyCode);
+            if (press.returned)
+                dispatchKeyToSystem(press.up);
+        }
+    }
+
+    //UI thread, queued down was evicted
+    private void onKeyDropped(int keyCode) {
+        KeyPress press = _keyPresses.get(keyCode);
+        if (press != null)
+            --press.pending;
+    }
+
+    private void dispatchKeyToSystem(KeyEvent event) {
+        IRenderer renderer = _target.getRenderer();
+        if (renderer != null)
+            renderer.dispatchKeyToSystem(event);
+    }
+
+    private void record(LatencyHistogram histogram, long eventTime) {
+        histogram.record(SystemClock.uptimeMillis() - eventTime);
+        if (histogram.getCount() % StatsLogInterval == 0 && Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, histogram + ", coalesced: " + _coalesced + ", dropped: " + _dropped);
+    }
+
+    synchronized void clear() {
+        Entry entry;
+        while((entry = _queue.pollFirst()) != null)
+            entry.recycle();
+        _drainScheduled = false;
+        _uiThread.execute(_keyPresses::clear);
+    }
+
+    LatencyHistogram getTouchLatency()  { return _touchLatency; }
+    LatencyHistogram getKeyLatency()    { return _keyLatency; }
+}
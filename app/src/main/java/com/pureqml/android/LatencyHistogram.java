@@ -0,0 +1,65 @@
+package com.pureqml.android;
+
+import androidx.annotation.NonNull;
+
+//power of two millisecond buckets: <1, <2, <4 ... <1024, >=1024
+public final class LatencyHistogram {
+    public static final int BucketCount = 12;
+
+    private final String    _name;
+    private final long[]    _buckets = new long[BucketCount];
+    private long            _count;
+    private long            _max;
+
+    public LatencyHistogram(String name) {
+        _name = name;
+    }
+
+    static int getBucket(long millis) {
+        int bucket = 0;
+        while(bucket < BucketCount - 1 && millis >= (1L << bucket))
+            ++bucket;
+        return bucket;
+    }
+
+    public synchronized void record(long millis) {
+        if (millis < 0)
+            millis = 0;
+        ++_buckets[getBucket(millis)];
+        ++_count;
+        if (millis > _max)
+            _max = millis;
+    }
+
+    public synchronized long getCount()             { return _count; }
+    public synchronized long getCount(int bucket)   { return _buckets[bucket]; }
+    public synchronized long getMax()               { return _max; }
+
+    //upper bound of the bucket holding given percentile, in milliseconds
+    public synchronized long getPercentile(float percentile) {
+        if (_count == 0)
+            return 0;
+        long threshold = (long)Math.ceil(_count * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < BucketCount; ++i) {
+            seen += _buckets[i];
+            if (seen >= threshold)
+                return i < BucketCount - 1? (1L << i): _max;
+        }
+        return _max;
+    }
+
+    public synchronized void reset() {
+        for(int i = 0; i < BucketCount; ++i)
+            _buckets[i] = 0;
+        _count = 0;
+        _max = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return _name + " latency: " + getCount() + " events, p50 <" + getPercentile(50) + "ms, p90 <" + getPercentile(90) +
+            "ms, p99 <" + getPercentile(99) + "ms, max " + getMax() + "ms";
+    }
+}
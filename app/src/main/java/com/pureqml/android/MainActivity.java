@@ -27,6 +27,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
+import android.view.inputmethod.BaseInputConnection;
 import android.view.inputmethod.InputMethodManager;
 
 import androidx.activity.OnBackPressedCallback;
@@ -35,6 +36,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.pureqml.android.runtime.Element;
 
+import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
@@ -43,12 +45,15 @@ public final class MainActivity
         implements ComponentCallbacks2
 {
     private static final String TAG = "main";
+    private static final int MaxPendingSystemKeys = 16;
     private boolean                 _executionEnvironmentBound = false;
     private ExecutionEnvironment    _executionEnvironment;
     private SurfaceView             _mainView;
     private Rect                    _surfaceFrame;
     private IRenderer               _uiRenderer;
-    boolean                         _keyDownHandled;
+    boolean                         _keyHandled;
+    private final ArrayList<KeyEvent> _systemKeys = new ArrayList<>(); //keys script did not handle, re-injected and not delivered yet
+    private BaseInputConnection     _systemKeyConnection;
     boolean                         _showSoftKeyboard;
     InputMethodManager              _imm;
 
@@ -178,7 +183,20 @@ public final class MainActivity
 
                     @Override
                     public void closeApp() {
-                        finish();
+                        runOnUiThread(MainActivity.this::finish);
+                    }
+
+                    @Override
+                    public void dispatchKeyToSystem(KeyEvent event) {
+                        //view root queues it like a key from input method: window callback, then fallback keys and focus navigation
+                        if (_mainView == null)
+                            return;
+                        if (_systemKeyConnection == null)
+                            _systemKeyConnection = new BaseInputConnection(_mainView, false);
+                        if (_systemKeys.size() >= MaxPendingSystemKeys)
+                            _systemKeys.remove(0); //never came back, view root is gone
+                        _systemKeys.add(event);
+                        _systemKeyConnection.sendKeyEvent(event);
                     }
                 };
                 if (_executionEnvironment != null)
@@ -255,19 +273,18 @@ public final class MainActivity
             }
             if (_executionEnvironment == null)
                 return false;
-            try {
-                return _executionEnvironment.sendEvent(event).get();
-            } catch (Exception e) {
-                Log.e(TAG, "execution exception", e);
-                return false;
-            }
+            return _executionEnvironment.getInputDispatcher().dispatchTouch(event);
         });
 
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @Override
             public void handleOnBackPressed() {
-                if (!processBack())
+                if (_executionEnvironment == null || _executionEnvironment.getExecutor() == null) {
                     finish();
+                    return;
+                }
+                //script decides asynchronously, app is closed if back is not handled
+                _executionEnvironment.getInputDispatcher().dispatchBack();
             }
         });
 
@@ -285,6 +302,9 @@ public final class MainActivity
 
     @Override
     public boolean dispatchKeyEvent(KeyEvent event) {
+        if (_systemKeys.remove(event)) //by identity, KeyEvent does not override equals
+            return super.dispatchKeyEvent(event);
+
         if (_executionEnvironment == null) {
             return false;
         }
@@ -305,19 +325,15 @@ public final class MainActivity
 
         switch (event.getAction()) {
             case KeyEvent.ACTION_DOWN: {
-                _keyDownHandled = false;
+                _keyHandled = false;
                 if (dpadCenterToInput) {
                     Log.d(TAG, "let input open IME...");
                     _imm.showSoftInput(focusedView, InputMethodManager.SHOW_FORCED);
-                    _keyDownHandled = true;
+                    _keyHandled = true;
                     _showSoftKeyboard = true;
                     _executionEnvironment.blockUiInput(true);
                 } else if (_executionEnvironment != null) {
-                    try {
-                        _keyDownHandled = _executionEnvironment.sendEvent(keyName, event).get();
-                    } catch (Exception e) {
-                        Log.e(TAG, "execution exception", e);
-                    }
+                    _keyHandled = _executionEnvironment.getInputDispatcher().dispatchKeyDown(keyName, event);
                 }
                 break;
             }
@@ -331,35 +347,17 @@ public final class MainActivity
                     Log.d(TAG, "IME activation button ACTION_UP");
                     return true;
                 }
+                _keyHandled = _executionEnvironment.getInputDispatcher().dispatchKeyUp(event);
                 break;
         }
 
-        if (_keyDownHandled)
+        if (_keyHandled)
             return true;
 
         Log.v(TAG, "returning key to system");
         return super.dispatchKeyEvent(event);
     }
 
-    private boolean processBack() {
-        try {
-            ExecutorService executor = _executionEnvironment.getExecutor();
-            if (executor == null)
-                return false;
-
-            boolean result = executor.submit(() -> {
-                Log.d(TAG, "back pressed, calling Context.processKey");
-                Element context = _executionEnvironment.getRootElement();
-                return context.emitUntilTrue(null, "keydown", "Back");
-            }).get();
-            Log.d(TAG, "key handler finishes with " + result);
-            return result;
-        } catch (Exception e) {
-            Log.e(TAG, "onBackPressed", e);
-        }
-        return false;
-    }
-
     @Override
     protected void onStop() {
         super.onStop();
@@ -397,6 +395,8 @@ public final class MainActivity
         if (_executionEnvironmentBound)
             unbindService(_executionEnvironmentConnection);
         _mainView = null;
+        _systemKeyConnection = null;
+        _systemKeys.clear();
         super.onDestroy();
     }
 
@@ -0,0 +1,118 @@
+package com.pureqml.android;
+
+import com.pureqml.android.runtime.BaseObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+//dense slot table for runtime objects, replaces boxed HashMap<Integer, BaseObject> lookups
+//object id = generation << IndexBits | slot index, so stale ids from recycled slots are detected
+public final class ObjectRegistry {
+    private static final int IndexBits      = 20;
+    private static final int IndexMask      = (1 << IndexBits) - 1;
+    private static final int GenerationMask = (1 << (31 - IndexBits)) - 1;
+    private static final int InitialCapacity = 1024;
+
+    private BaseObject[]    _objects;
+    private int[]           _generations;
+    private int[]           _freeSlots;
+    private int             _freeCount;
+    private int             _nextSlot = 1; //slot 0 is never used, id 0 means "no object"
+    private int             _size;
+    private int             _peakSize;
+
+    public ObjectRegistry() {
+        _objects = new BaseObject[InitialCapacity];
+        _generations = new int[InitialCapacity];
+        _freeSlots = new int[64];
+    }
+
+    private static int index(int id)        { return id & IndexMask; }
+    private static int generation(int id)   { return (id >>> IndexBits) & GenerationMask; }
+
+    private void grow(int minCapacity) {
+        int capacity = _objects.length;
+        while(capacity < minCapacity)
+            capacity *= 2;
+        _objects = Arrays.copyOf(_objects, capacity);
+        _generations = Arrays.copyOf(_generations, capacity);
+    }
+
+    //reserves slot and returns its id, slot is filled later with put()
+    public int allocate() {
+        int index;
+        if (_freeCount > 0) {
+            index = _freeSlots[--_freeCount];
+        } else {
+            index = _nextSlot++;
+            if (index > IndexMask)
+                throw new RuntimeException("object registry exhausted, " + index + " slots in use");
+            if (index >= _objects.length)
+                grow(index + 1);
+        }
+        return (_generations[index] << IndexBits) | index;
+    }
+
+    public BaseObject get(int id) {
+        int index = index(id);
+        if (index == 0 || index >= _nextSlot || _generations[index] != generation(id))
+            return null;
+        return _objects[index];
+    }
+
+    public void put(int id, BaseObject object) {
+        int index = index(id);
+        if (index == 0 || index >= _nextSlot || _generations[index] != generation(id))
+            throw new RuntimeException("putObject: stale or unallocated object id " + id);
+        if (_objects[index] == null) {
+            if (++_size > _peakSize)
+                _peakSize = _size;
+        }
+        _objects[index] = object;
+    }
+
+    public void remove(int id) {
+        int index = index(id);
+        if (index == 0 || index >= _nextSlot || _generations[index] != generation(id))
+            return; //stale id, slot already recycled
+
+        if (_objects[index] != null) {
+            _objects[index] = null;
+            --_size;
+        }
+        _generations[index] = (_generations[index] + 1) & GenerationMask;
+        if (_freeCount == _freeSlots.length)
+            _freeSlots = Arrays.copyOf(_freeSlots, _freeCount * 2);
+        _freeSlots[_freeCount++] = index;
+    }
+
+    public ArrayList<BaseObject> values() {
+        ArrayList<BaseObject> values = new ArrayList<>(_size);
+        for(int i = 1; i < _nextSlot; ++i) {
+            BaseObject object = _objects[i];
+            if (object != null)
+                values.add(object);
+        }
+        return values;
+    }
+
+    public void clear() {
+        Arrays.fill(_objects, null);
+        Arrays.fill(_generations, 0);
+        _freeCount = 0;
+        _nextSlot = 1;
+        _size = 0;
+        _peakSize = 0;
+    }
+
+    public int size()       { return _size; }
+    public int peakSize()   { return _peakSize; }
+    public int capacity()   { return _objects.length; }
+    public int slotsUsed()  { return _nextSlot - 1; }
+
+    //ratio of live objects to slots ever handed out
+    public float occupancy() {
+        int slots = _nextSlot - 1;
+        return slots > 0? (float)_size / slots: 0;
+    }
+}
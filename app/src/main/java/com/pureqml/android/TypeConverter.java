@@ -101,7 +101,9 @@ public final class TypeConverter {
     }
 
     public static Object getValue(IExecutionEnvironment env, Class<?> type, Object object) {
-        if (type != null && object.getClass() == type) {
+        if (object == null) {
+            return null; //null is passed as is, only undefined comes as V8Value
+        } else if (type != null && object.getClass() == type) {
             return object;
         } else if (object instanceof V8Value) {
             V8Value value = (V8Value)object;
@@ -16,18 +16,19 @@ import java.lang.reflect.Modifier;
 
 final class Wrapper {
     public static final String TAG = "ClassWrapper";
-    private static final String UNIQUE_ID_KEY = "__uniqueId";
+    static final String UNIQUE_ID_KEY = "__uniqueId";
 
     public static final class MethodWrapper implements JavaCallback {
         final IExecutionEnvironment _env;
         private final Method _method;
-        public MethodWrapper(IExecutionEnvironment env, Method method) { _env = env; _method = method; }
+        private final Class<?>[] _argsType; //getParameterTypes() clones array on every call
+        public MethodWrapper(IExecutionEnvironment env, Method method) { _env = env; _method = method; _argsType = method.getParameterTypes(); }
 
         @Override
         public Object invoke(V8Object self, V8Array arguments) {
             BaseObject element = _env.getObjectById(self.getInteger(UNIQUE_ID_KEY));
             int n = arguments.length();
-            Class<?>[] argsType = _method.getParameterTypes();
+            Class<?>[] argsType = _argsType;
             Object [] targetArguments = new Object[n];
             for(int i = 0; i < n; ++i) {
                 targetArguments[i] = TypeConverter.getValue(_env, argsType[i], arguments.get(i));
@@ -68,19 +69,30 @@ final class Wrapper {
         }
     }
 
+    //public methods declared in cls itself, runtime api for the environment is package-private, see runtime.Elements
+    static boolean isExported(Class<?> cls, Method method) {
+        int mods = method.getModifiers();
+        //for some reasons android always return public (1) here :\
+        return method.getDeclaringClass().equals(cls) && !Modifier.isPrivate(mods) && !Modifier.isProtected(mods) && !method.isSynthetic();
+    }
+
+    //reflective callback for methods without typed dispatcher
+    static JavaCallback wrapMethod(IExecutionEnvironment env, Method method) {
+        Class<?>[] argTypes = method.getParameterTypes();
+        if (argTypes.length == 1 && argTypes[0].equals(V8Array.class))
+            return new SimpleMethodWrapper(env, method);
+        else
+            return new MethodWrapper(env, method);
+    }
+
     public static void generatePrototype(IExecutionEnvironment env, V8 v8, V8Object prototype, Class<?> cls) {
         for(Method method : cls.getMethods()) {
-            String name = method.getName();
-            int mods = method.getModifiers();
-            //for some reasons android always return public (1) here :\
-            if (!method.getDeclaringClass().equals(cls) || Modifier.isPrivate(mods) || Modifier.isProtected(mods) || method.isSynthetic())
+            if (!isExported(cls, method))
                 continue;
 
-            Class<?>[] argTypes = method.getParameterTypes();
-            if (argTypes.length == 1 && argTypes[0].equals(V8Array.class)) {
-                prototype.registerJavaMethod(new SimpleMethodWrapper(env, method), name);
-            } else
-                prototype.registerJavaMethod(new MethodWrapper(env, method), name);
+            String name = method.getName();
+            JavaCallback binding = Bindings.get(env, cls, name);
+            prototype.registerJavaMethod(binding != null? binding: wrapMethod(env, method), name);
         }
     }
 
@@ -0,0 +1,92 @@
+package com.pureqml.android.runtime;
+
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Value;
+
+//argument arrays for event callbacks, one per arity, reused by every emit on script thread
+//nested emit of the same arity gets temporary array, so arguments of outer emit stay intact
+public final class ArgumentsPool {
+    public static final int MaxArity = 4;
+    private static final String[] Index = { "0", "1", "2", "3" };
+
+    private final V8            _runtime;
+    private final V8Array[]     _arrays = new V8Array[MaxArity + 1];
+    private final boolean[]     _used = new boolean[MaxArity + 1];
+
+    public ArgumentsPool(V8 runtime) {
+        _runtime = runtime;
+    }
+
+    //returns array of given length filled with undefined
+    V8Array acquire(int arity) {
+        if (arity <= MaxArity && !_used[arity]) {
+            V8Array args = _arrays[arity];
+            if (args == null)
+                args = _arrays[arity] = create(arity);
+            _used[arity] = true;
+            return args;
+        }
+        return create(arity);
+    }
+
+    void release(V8Array args) {
+        for(int arity = 0; arity <= MaxArity; ++arity) {
+            if (_arrays[arity] == args) {
+                //drop references to objects passed, so they can be collected
+                for(int i = 0; i < arity; ++i)
+                    args.addUndefined(Index[i]);
+                _used[arity] = false;
+                return;
+            }
+        }
+        args.close();
+    }
+
+    private V8Array create(int arity) {
+        V8Array args = new V8Array(_runtime);
+        for(int i = 0; i < arity; ++i)
+            args.pushUndefined();
+        return args;
+    }
+
+    private static String key(int index) {
+        return index < Index.length? Index[index]: Integer.toString(index);
+    }
+
+    //array elements are set as indexed properties, V8Array has no setter by index
+    static void set(V8Array args, int index, int value)        { args.add(key(index), value); }
+    static void set(V8Array args, int index, double value)     { args.add(key(index), value); }
+    static void set(V8Array args, int index, boolean value)    { args.add(key(index), value); }
+    static void set(V8Array args, int index, String value)     { args.add(key(index), value); }
+    static void set(V8Array args, int index, V8Value value)    { args.add(key(index), value); }
+
+    static void set(V8Array args, int index, Object value) {
+        if (value == null)
+            args.addNull(key(index));
+        else if (value instanceof Integer)
+            set(args, index, (int)(Integer)value);
+        else if (value instanceof Long)
+            set(args, index, (double)(Long)value);
+        else if (value instanceof Number)
+            set(args, index, ((Number)value).doubleValue());
+        else if (value instanceof Boolean)
+            set(args, index, (boolean)(Boolean)value);
+        else if (value instanceof String)
+            set(args, index, (String)value);
+        else if (value instanceof V8Value)
+            set(args, index, (V8Value)value);
+        else
+            throw new IllegalArgumentException("unsupported argument type " + value.getClass());
+    }
+
+    public void close() {
+        for(int i = 0; i <= MaxArity; ++i) {
+            if (_arrays[i] != null) {
+                _arrays[i].close();
+                _arrays[i] = null;
+            }
+            _used[i] = false;
+        }
+    }
+}
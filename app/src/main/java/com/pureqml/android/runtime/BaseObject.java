@@ -6,19 +6,32 @@ import com.eclipsesource.v8.Releasable;
 import com.eclipsesource.v8.V8Array;
 import com.eclipsesource.v8.V8Function;
 import com.eclipsesource.v8.V8Object;
+import com.eclipsesource.v8.V8Value;
 import com.pureqml.android.IExecutionEnvironment;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 public class BaseObject {
     private static final String TAG = "object";
 
+    //well-known events, presence of their listeners is kept in a bitmask for hot paths
+    static final int EVENT_MASK_CLICK       = 1;
+    static final int EVENT_MASK_MOUSEDOWN   = 1 << 1;
+    static final int EVENT_MASK_MOUSEUP     = 1 << 2;
+    static final int EVENT_MASK_MOUSEMOVE   = 1 << 3;
+    static final int EVENT_MASK_SCROLL      = 1 << 4;
+    static final int EVENT_MASK_KEYDOWN     = 1 << 5;
+    static final int EVENT_MASK_MOUSE       = EVENT_MASK_CLICK | EVENT_MASK_MOUSEDOWN | EVENT_MASK_MOUSEUP | EVENT_MASK_MOUSEMOVE;
+
+    private static final V8Function[] NoCallbacks = new V8Function[0];
+
     protected final IExecutionEnvironment         _env;
     private final int                             _objectId;
-    private Map<String, List<V8Function>>         _callbacks;
+    //listener arrays are never modified in place, so callbacks can add or remove listeners while being emitted
+    private Map<String, V8Function[]>             _callbacks;
+    private int                                   _eventMask;
 
     public BaseObject(IExecutionEnvironment env) {
         _env = env;
@@ -27,13 +40,26 @@ public class BaseObject {
 
     public int getObjectId() { return _objectId; }
 
+    static int getEventMask(String name) {
+        switch(name) {
+            case "click":       return EVENT_MASK_CLICK;
+            case "mousedown":   return EVENT_MASK_MOUSEDOWN;
+            case "mouseup":     return EVENT_MASK_MOUSEUP;
+            case "mousemove":   return EVENT_MASK_MOUSEMOVE;
+            case "scroll":      return EVENT_MASK_SCROLL;
+            case "keydown":     return EVENT_MASK_KEYDOWN;
+            default:            return 0;
+        }
+    }
+
     public void discard() {
         if (_callbacks != null) {
-            for(List<V8Function> callbacks: _callbacks.values()) {
+            for(V8Function[] callbacks: _callbacks.values()) {
                 for(V8Function callback : callbacks)
                     callback.close();
             }
             _callbacks = null;
+            setEventMask(0);
         }
         _env.removeObject(this.getObjectId());
     }
@@ -42,12 +68,31 @@ public class BaseObject {
         //Log.d(TAG, "on " + name);
         if (_callbacks == null)
             _callbacks = new HashMap<>();
-        List<V8Function> callbacks = _callbacks.get(name);
+        V8Function[] callbacks = _callbacks.get(name);
         if (callbacks == null) {
-            callbacks = new LinkedList<>();
-            _callbacks.put(name, callbacks);
+            callbacks = new V8Function[] { callback };
+        } else {
+            callbacks = Arrays.copyOf(callbacks, callbacks.length + 1);
+            callbacks[callbacks.length - 1] = callback;
         }
-        callbacks.add(callback);
+        _callbacks.put(name, callbacks);
+        setEventMask(_eventMask | getEventMask(name));
+    }
+
+    protected final int getEventMask() { return _eventMask; }
+
+    private void setEventMask(int mask) {
+        int changed = _eventMask ^ mask;
+        _eventMask = mask;
+        if (changed != 0)
+            onEventMaskChanged(changed);
+    }
+
+    //called with bits of well-known events which got first or lost last listener
+    protected void onEventMaskChanged(int changed) { }
+
+    protected final boolean hasCallbackFor(int mask) {
+        return (_eventMask & mask) != 0;
     }
 
     protected boolean hasCallbackFor(String name) {
@@ -58,64 +103,141 @@ public class BaseObject {
         if (_callbacks == null)
             return false;
 
-        List<V8Function> callbacks = _callbacks.get(name);
+        V8Function[] callbacks = _callbacks.get(name);
         if (callbacks == null)
             return false;
 
-        return callbacks.remove(callback);
+        int index = -1;
+        for(int i = 0; i < callbacks.length; ++i) {
+            if (callbacks[i].equals(callback)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0)
+            return false;
+
+        if (callbacks.length == 1) {
+            _callbacks.remove(name);
+            setEventMask(_eventMask & ~getEventMask(name));
+        } else {
+            V8Function[] updated = new V8Function[callbacks.length - 1];
+            System.arraycopy(callbacks, 0, updated, 0, index);
+            System.arraycopy(callbacks, index + 1, updated, index, updated.length - index);
+            _callbacks.put(name, updated);
+        }
+        return true;
     }
 
-    public void emit(V8Object target, String name, Object ... args) {
-        Log.v(TAG, "emitting " + name);
+    private V8Function[] getCallbacks(String name) {
         if (_callbacks == null)
+            return NoCallbacks;
+        V8Function[] callbacks = _callbacks.get(name);
+        return callbacks != null? callbacks: NoCallbacks;
+    }
+
+    private static void logEmit(String name) {
+        if (Log.isLoggable(TAG, Log.VERBOSE))
+            Log.v(TAG, "emitting " + name);
+    }
+
+    private V8Array obtainArguments(int arity) {
+        return _env.getArgumentsPool().acquire(arity);
+    }
+
+    private void releaseArguments(V8Array args) {
+        _env.getArgumentsPool().release(args);
+    }
+
+    public void emit(V8Object target, String name, Object ... args) {
+        logEmit(name);
+        V8Function[] callbacks = getCallbacks(name);
+        if (callbacks.length == 0)
             return;
 
-        List<V8Function> callbacks = _callbacks.get(name);
-        if (callbacks == null)
+        V8Array v8args = obtainArguments(args.length);
+        for(int i = 0; i < args.length; ++i)
+            ArgumentsPool.set(v8args, i, args[i]);
+        call(target, name, callbacks, v8args);
+    }
+
+    //overloads below avoid varargs array and boxing for frequent events
+    //package-private, public overloads would be exported to scripts under the same name
+    void emit(V8Object target, String name) {
+        logEmit(name);
+        V8Function[] callbacks = getCallbacks(name);
+        if (callbacks.length == 0)
             return;
 
-        V8Array v8args = new V8Array(_env.getRuntime());
-        for (Object arg : args) {
-            v8args.push(arg);
-        }
-        for(V8Function callback : callbacks) {
-            try {
-                Object r = callback.call(target, v8args);
-                if (r instanceof Releasable)
-                    ((Releasable)r).release();
-            } catch (Exception e) {
-                Log.e(TAG, "callback for " + name + " failed", e);
+        call(target, name, callbacks, obtainArguments(0));
+    }
+
+    void emit(V8Object target, String name, V8Value arg) {
+        logEmit(name);
+        V8Function[] callbacks = getCallbacks(name);
+        if (callbacks.length == 0)
+            return;
+
+        V8Array v8args = obtainArguments(1);
+        ArgumentsPool.set(v8args, 0, arg);
+        call(target, name, callbacks, v8args);
+    }
+
+    void emit(V8Object target, String name, int arg0, int arg1) {
+        logEmit(name);
+        V8Function[] callbacks = getCallbacks(name);
+        if (callbacks.length == 0)
+            return;
+
+        V8Array v8args = obtainArguments(2);
+        ArgumentsPool.set(v8args, 0, arg0);
+        ArgumentsPool.set(v8args, 1, arg1);
+        call(target, name, callbacks, v8args);
+    }
+
+    //releases args
+    private void call(V8Object target, String name, V8Function[] callbacks, V8Array args) {
+        try {
+            for(int i = 0; i < callbacks.length; ++i) {
+                try {
+                    Object r = callbacks[i].call(target, args);
+                    if (r instanceof Releasable)
+                        ((Releasable)r).release();
+                } catch (Exception e) {
+                    Log.e(TAG, "callback for " + name + " failed", e);
+                }
             }
+        } finally {
+            releaseArguments(args);
         }
-        v8args.close();
     }
 
-    public boolean emitUntilTrue(V8Object target, String name, Object ... args) {
-        Log.i(TAG, "emitting " + name);
-        if (_callbacks == null)
+    public boolean emitUntilTrue(V8Object target, String name, String arg) {
+        logEmit(name);
+        V8Function[] callbacks = getCallbacks(name);
+        if (callbacks.length == 0)
             return false;
 
-        List<V8Function> callbacks = _callbacks.get(name);
-        if (callbacks == null)
-            return false;
-
-        V8Array v8args = new V8Array(_env.getRuntime());
-        for (Object arg : args) {
-            v8args.push(arg);
-        }
+        V8Array v8args = obtainArguments(1);
+        ArgumentsPool.set(v8args, 0, arg);
         boolean result = false;
-        for(V8Function callback : callbacks) {
-            try {
-                Boolean r = (Boolean)callback.call(target, v8args);
-                if (r) {
-                    result = true;
-                    break;
+        try {
+            for(int i = 0; i < callbacks.length; ++i) {
+                try {
+                    Object r = callbacks[i].call(target, v8args);
+                    if (r instanceof Boolean && (Boolean)r) {
+                        result = true;
+                        break;
+                    }
+                    if (r instanceof Releasable)
+                        ((Releasable)r).release();
+                } catch (Exception e) {
+                    Log.e(TAG, "callback for " + name + " failed", e);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "callback for " + name + " failed", e);
             }
+        } finally {
+            releaseArguments(v8args);
         }
-        v8args.close();
         return result;
     }
 }
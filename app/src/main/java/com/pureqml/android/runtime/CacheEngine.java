@@ -0,0 +1,79 @@
+package com.pureqml.android.runtime;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+//policy and accounting for automatic display list caching of element subtrees
+//elements which are repainted without changes get promoted, elements which change most of the frames they are painted get demoted
+public final class CacheEngine {
+    static final int    PromoteFrames       = 30;   //repainted unchanged this many times in a row
+    static final int    MinSubtreeSize      = 16;   //elements in subtree, cheaper subtrees are not worth a display list
+    static final float  ChurnWeight         = 0.2f; //moving average weight of change rate
+    static final float  DemoteChurn         = 0.5f; //re-recorded every other paint
+
+    private static final int DefaultBudget = 16 * 1024 * 1024;
+
+    private long    _budget = DefaultBudget;
+    private long    _used;
+    private int     _frame;
+    private long    _hits;
+    private long    _misses;
+    private long    _promotions;
+    private long    _demotions;
+
+    public void beginFrame() { ++_frame; }
+    int getFrame() { return _frame; }
+
+    //0 disables automatic caching, auto cached elements are demoted on next paint
+    public void setBudget(long bytes)   { _budget = bytes; }
+    public long getBudget()             { return _budget; }
+
+    boolean isEnabled() {
+        //display lists can't be replayed on hardware canvas before M, see Element.enableCache
+        return _budget > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    //estimated memory of display list, worst case it gets rasterized into layer
+    static long estimateSize(int width, int height) {
+        return (long)Math.max(width, 0) * Math.max(height, 0) * 4;
+    }
+
+    boolean reserve(long bytes) {
+        if (_used + bytes > _budget)
+            return false;
+        _used += bytes;
+        return true;
+    }
+
+    void release(long bytes) {
+        _used -= bytes;
+        if (_used < 0)
+            _used = 0;
+    }
+
+    void onHit()        { ++_hits; }
+    void onMiss()       { ++_misses; }
+    void onPromote()    { ++_promotions; }
+    void onDemote()     { ++_demotions; }
+
+    public long getUsed()       { return _used; }
+    public long getHits()       { return _hits; }
+    public long getMisses()     { return _misses; }
+    public long getPromotions() { return _promotions; }
+    public long getDemotions()  { return _demotions; }
+
+    public float getHitRatio() {
+        long total = _hits + _misses;
+        return total > 0? (float)_hits / total: 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "cache hits: %d, misses: %d (%.1f%%), promoted: %d, demoted: %d, used %dK of %dK",
+                _hits, _misses, getHitRatio() * 100, _promotions, _demotions, _used / 1024, _budget / 1024);
+    }
+}
@@ -0,0 +1,150 @@
+package com.pureqml.android.runtime;
+
+import android.graphics.Rect;
+
+//bounded set of disjoint damaged rects, replaces single union rect so distant small updates stay small
+//when the limit is reached the rect which grows the least on union absorbs the new one
+public final class DamageRegion {
+    public static final int DefaultMaxRects = 4;
+
+    private final Rect[]    _rects;
+    private int             _size;
+    private final Rect      _bounds = new Rect();
+
+    public DamageRegion() { this(DefaultMaxRects); }
+
+    public DamageRegion(int maxRects) {
+        if (maxRects < 1)
+            throw new IllegalArgumentException("damage region needs at least one rect");
+        _rects = new Rect[maxRects];
+        for(int i = 0; i < maxRects; ++i)
+            _rects[i] = new Rect();
+    }
+
+    private static long area(Rect rect) {
+        return (long)rect.width() * rect.height();
+    }
+
+    private static long unionArea(Rect a, int left, int top, int right, int bottom) {
+        long w = Math.max(a.right, right) - Math.min(a.left, left);
+        long h = Math.max(a.bottom, bottom) - Math.min(a.top, top);
+        return w * h;
+    }
+
+    private void removeAt(int index) {
+        Rect removed = _rects[index];
+        --_size;
+        _rects[index] = _rects[_size];
+        _rects[_size] = removed; //keep preallocated rect for reuse
+    }
+
+    public void add(Rect rect) {
+        if (rect == null || rect.isEmpty())
+            return;
+        add(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    public void add(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom)
+            return;
+
+        _bounds.union(left, top, right, bottom);
+
+        //absorb all intersecting rects, union may intersect others, so repeat until stable
+        boolean merged;
+        do {
+            merged = false;
+            for(int i = 0; i < _size; ++i) {
+                Rect rect = _rects[i];
+                if (rect.left < right && left < rect.right && rect.top < bottom && top < rect.bottom) {
+                    if (rect.contains(left, top, right, bottom))
+                        return;
+                    left = Math.min(left, rect.left);
+                    top = Math.min(top, rect.top);
+                    right = Math.max(right, rect.right);
+                    bottom = Math.max(bottom, rect.bottom);
+                    removeAt(i);
+                    merged = true;
+                    break;
+                }
+            }
+        } while(merged);
+
+        if (_size < _rects.length) {
+            _rects[_size++].set(left, top, right, bottom);
+            return;
+        }
+
+        //full, merge into the rect with the smallest area growth
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for(int i = 0; i < _size; ++i) {
+            Rect rect = _rects[i];
+            long growth = unionArea(rect, left, top, right, bottom) - area(rect);
+            if (growth < bestGrowth) {
+                bestGrowth = growth;
+                best = i;
+            }
+        }
+        //grown rect may intersect others now, so it's taken out and added again
+        Rect rect = _rects[best];
+        rect.union(left, top, right, bottom);
+        removeAt(best);
+        add(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    public void add(DamageRegion region) {
+        for(int i = 0; i < region._size; ++i)
+            add(region._rects[i]);
+    }
+
+    //replaces whole region with single rect, used when surface expands locked area
+    public void set(Rect rect) {
+        clear();
+        add(rect);
+    }
+
+    public void clear() {
+        _size = 0;
+        _bounds.setEmpty();
+    }
+
+    public boolean isEmpty()    { return _size == 0; }
+    public int size()           { return _size; }
+    public Rect get(int index)  { return _rects[index]; }
+    public Rect getBounds()     { return _bounds; }
+
+    //sum of rect areas, rects are disjoint so this is exact damaged area
+    public long getArea() {
+        long area = 0;
+        for(int i = 0; i < _size; ++i)
+            area += area(_rects[i]);
+        return area;
+    }
+
+    public boolean intersects(Rect rect) {
+        return intersects(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    public boolean intersects(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom)
+            return false;
+        for(int i = 0; i < _size; ++i) {
+            Rect rect = _rects[i];
+            if (rect.left < right && left < rect.right && rect.top < bottom && top < rect.bottom)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DamageRegion[");
+        for(int i = 0; i < _size; ++i) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(_rects[i].toShortString());
+        }
+        return sb.append(']').toString();
+    }
+}
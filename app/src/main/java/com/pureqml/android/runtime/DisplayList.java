@@ -0,0 +1,106 @@
+package com.pureqml.android.runtime;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.RenderNode;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+//recorded subtree, RenderNode when drawn into hardware canvas on Q+, Picture otherwise
+//content is recorded at origin with full opacity, position and alpha are applied when drawn
+abstract class DisplayList {
+    private static boolean useRenderNode(boolean hardware) {
+        return hardware && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    //returns current list if it can be drawn into the target canvas, new one otherwise
+    static DisplayList obtain(DisplayList current, boolean hardware) {
+        boolean node = useRenderNode(hardware);
+        if (current != null) {
+            if (current.isHardware() == node)
+                return current;
+            current.discard();
+        }
+        return node? new NodeDisplayList(): new PictureDisplayList();
+    }
+
+    abstract boolean isHardware();
+    abstract Canvas beginRecording(int width, int height);
+    abstract void endRecording();
+    abstract int getWidth();
+    abstract int getHeight();
+    abstract void draw(Canvas canvas, int x, int y, float opacity);
+    abstract void discard();
+
+    private static final class PictureDisplayList extends DisplayList {
+        private final Picture _picture = new Picture();
+
+        @Override
+        boolean isHardware() { return false; }
+
+        @Override
+        Canvas beginRecording(int width, int height) { return _picture.beginRecording(width, height); }
+
+        @Override
+        void endRecording() { _picture.endRecording(); }
+
+        @Override
+        int getWidth() { return _picture.getWidth(); }
+
+        @Override
+        int getHeight() { return _picture.getHeight(); }
+
+        @Override
+        void draw(Canvas canvas, int x, int y, float opacity) {
+            int saveCount = canvas.save();
+            canvas.translate(x, y);
+            if (opacity < 1)
+                canvas.saveLayerAlpha(null, (int)(opacity * 255)); //bounded by clip only, children may overflow picture size
+            canvas.drawPicture(_picture);
+            canvas.restoreToCount(saveCount);
+        }
+
+        @Override
+        void discard() { }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private static final class NodeDisplayList extends DisplayList {
+        private final RenderNode _node = new RenderNode("Element");
+
+        NodeDisplayList() {
+            _node.setClipToBounds(false); //same as Picture, children may overflow
+        }
+
+        @Override
+        boolean isHardware() { return true; }
+
+        @Override
+        Canvas beginRecording(int width, int height) {
+            _node.setPosition(0, 0, width, height);
+            return _node.beginRecording(width, height);
+        }
+
+        @Override
+        void endRecording() { _node.endRecording(); }
+
+        @Override
+        int getWidth() { return _node.getWidth(); }
+
+        @Override
+        int getHeight() { return _node.getHeight(); }
+
+        @Override
+        void draw(Canvas canvas, int x, int y, float opacity) {
+            //node properties only, recorded content is reused as is
+            _node.setTranslationX(x);
+            _node.setTranslationY(y);
+            _node.setAlpha(opacity);
+            canvas.drawRenderNode(_node);
+        }
+
+        @Override
+        void discard() { _node.discardDisplayList(); }
+    }
+}
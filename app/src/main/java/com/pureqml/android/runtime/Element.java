@@ -1,18 +1,19 @@
 package com.pureqml.android.runtime;
 
-import android.animation.TimeInterpolator;
+import android.content.res.Resources;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Picture;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.os.Build;
 import android.os.SystemClock;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
-import android.view.animation.DecelerateInterpolator;
 
 import com.eclipsesource.v8.Releasable;
 import com.eclipsesource.v8.V8Array;
@@ -22,6 +23,7 @@ import com.pureqml.android.IExecutionEnvironment;
 import com.pureqml.android.TypeConverter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -41,11 +43,15 @@ public class Element extends BaseObject {
     static final String EVENT_MOUSEMOVE = "mousemove";
 
     private final Rect          _rect               = new Rect();
+    private final Rect          _paintRect          = new Rect(); //screen rect of current paint
+    private final Rect          _dstRect            = new Rect();
     private final Rect          _combinedRect       = new Rect();
     protected final Rect        _lastRect           = new Rect();
     private Point               _translate;
     private PointF              _scale;
     private float               _rotate             = 0;
+    private Matrix              _transformMatrix;   //see getTransform()
+    private final Rect          _transformedRect    = new Rect(); //last painted bounds under scale/rotate, in parent coordinates
 
     private   float             _opacity            = 1;
     protected boolean           _visible            = true;
@@ -56,16 +62,47 @@ public class Element extends BaseObject {
     protected int               _z;
     private boolean             _cache = false;
     private boolean             _cacheValid = false;
-    private Picture             _cachePicture = null;
+    private DisplayList         _displayList = null;
+    private boolean             _autoCache;         //cache promoted by CacheEngine, not requested by style
+    private long                _autoCacheSize;     //bytes reserved in CacheEngine
+    private boolean             _changedSincePaint;
+    private int                 _lastPaintFrame;
+    private int                 _stableFrames;
+    private float               _churn;
+    private int                 _subtreeSize = 1;
     protected ComputedStyle     _style = null;
+    private boolean             _updateBatched;
+    private boolean             _updatePending;
+    private int                 _screenOriginX; //screen position of children origin, see updateScreenOrigin()
+    private int                 _screenOriginY;
+    private boolean             _screenOriginValid;
+    private int                 _paintX; //position of last paint, rects below are relative to it
+    private int                 _paintY;
+    private final Rect          _hitBounds          = new Rect(); //area where subtree may take touch, parent coordinates
+    private boolean             _hitBoundsValid;
+    private HitGrid             _hitGrid;
+    private boolean             _hitGridValid;
+    private boolean             _hitTarget;         //isHitTarget() value counted in _subtreeHitTargets
+    private int                 _subtreeHitTargets; //hit targets in subtree including this element
+    private Element             _touchChild;        //child which took touch down, receives rest of the gesture
+    private int                 _touchEventId;
 
     protected ArrayList<Element> _children;
 
+    //paint runs on script thread only, scratch objects below are shared by all elements
+    private static Element[]    _paintStack = new Element[256];
+    private static int          _paintStackSize;
+    private static final Path   _clipPath = new Path();
+    private static final RectF  _mapRect = new RectF();
+    private static final Paint  _alphaPaint = new Paint();
+    private static final PointF _velocity = new PointF();
+
     private static final float  DetectionDistance = 5;
     private static final float  DetectionDistance2 = DetectionDistance * DetectionDistance;
     private static final float  MinimumScrollVelocity = 500;
-    private static final float  DecelerateInterpolatorOrder = 3;
-    private static final float  ScrollDuration = 3.0f;
+    private static final float  OverscrollDistance = 64; //dp, bounce limit when overscroll-behavior is auto
+    private static final int    HitGridMinChildren = 64;
+    private static final float  AnimationTimeout = 3600; //seconds, animations stop themselves when finished
 
     private boolean             _enableScrollX;
     private boolean             _enableScrollY;
@@ -76,12 +113,17 @@ public class Element extends BaseObject {
     private PointF              _scrollPos;
     private Element             _scrollingElement; //bloody html, scroll is reported on parent element
     private int                 _eventId;
+    private boolean             _scrollEmitPending;
+    private boolean             _snapX;         //scroll-snap-type of scroll container, children starts are snap points
+    private boolean             _snapY;
+    private boolean             _overscroll;    //overscroll-behavior of scroll container, bounce at edges
 
     //inertial scrolling
-    private PointF              _scrollVelocity;
-    private TimeInterpolator    _scrollInterpolator;
-    private long                _scrollTimeBase;
-    private long                _scrollTimeLast;
+    private Fling               _flingX;
+    private Fling               _flingY;
+
+    //native transitions
+    private PropertyAnimator    _animator;
 
     PaintDelegate               _paintDelegate;
 
@@ -96,61 +138,103 @@ public class Element extends BaseObject {
 
     String getTag() { return "div"; }
 
+    //called by environment on every frame between startAnimating() and stopAnimation()
     public void animate() {
-        if (_scrollVelocity == null)
-            return;
+        int finished = 0;
+        if (_animator != null && _animator.isActive())
+            finished = _animator.tick(this, _env.getFrameTime());
 
-        Log.v(TAG, "animate, scroll velocity: " + _scrollVelocity);
-        long now = SystemClock.elapsedRealtime();
-        float t = (now - _scrollTimeBase) / 1000.0f / ScrollDuration;
-        float dt = (now - _scrollTimeLast) / 1000.0f;
-        _scrollTimeLast = now;
+        if (isFlinging())
+            animateScroll();
 
-        Log.v(TAG, "t: " + t + ", dt: " + dt);
-        if (t > 1.0f) {
-            t = 1.0f;
-        }
-
-        float vtdt = (1.0f - _scrollInterpolator.getInterpolation(t)) * dt;
-        _scrollPos.x += _scrollVelocity.x * vtdt;
-        _scrollPos.y += _scrollVelocity.y * vtdt;
+        if (!isFlinging() && (_animator == null || !_animator.isActive()))
+            _env.stopAnimation(this);
 
-        Rect rect = getRect();
-        Rect parentRect = _parent.getRect();
+        //handlers may start new transitions, so it's done after updating state
+        for(int property = 0; finished != 0; ++property, finished >>>= 1) {
+            if ((finished & 1) != 0)
+                emit(null, "transitionend", PropertyAnimator.getName(property));
+        }
+    }
 
-        int clientWidth = rect.width(), clientHeight = rect.height();
-        int w = parentRect.width(), h = parentRect.height();
+    //updater runs until animate() finds nothing to do
+    private void startAnimating() {
+        _env.startAnimation(this, AnimationTimeout);
+    }
 
-        boolean enableScrollX = scrollXEnabled() && clientWidth > w;
-        boolean enableScrollY = scrollYEnabled() && clientHeight > h;
+    private boolean isFlinging() {
+        return (_flingX != null && _flingX.isActive()) || (_flingY != null && _flingY.isActive());
+    }
 
-        if (enableScrollX && _scrollPos.x + w > clientWidth) {
-            Log.v(TAG, "stopping scrolling, right edge reached");
-            _scrollPos.x = clientWidth - w;
-            t = 1.0f; //finish
+    //integrates fling to frame time, scroll is emitted once per frame
+    private void animateScroll() {
+        long now = _env.getFrameTime();
+        if (_flingX != null && _flingX.isActive()) {
+            _flingX.update(now);
+            _scrollPos.x = _flingX.getPosition();
         }
-        if (enableScrollY && _scrollPos.y + h > clientHeight) {
-            Log.v(TAG, "stopping scrolling, bottom edge reached");
-            _scrollPos.y = clientHeight - h;
-            t = 1.0f; //finish
+        if (_flingY != null && _flingY.isActive()) {
+            _flingY.update(now);
+            _scrollPos.y = _flingY.getPosition();
         }
-        if (enableScrollX && _scrollPos.x < 0) {
-            Log.v(TAG, "stopping scrolling, left edge reached");
-            _scrollPos.x = 0;
-            t = 1.0f; //finish
-        }
-        if (enableScrollY && _scrollPos.y < 0) {
-            Log.v(TAG, "stopping scrolling, top edge reached");
-            _scrollPos.y = 0;
-            t = 1.0f; //finish
+        emitScroll();
+    }
+
+    //stops fling on touch, position left past the edge by bounce is put back into range
+    private void stopFling() {
+        if (!isFlinging())
+            return;
+        if (_flingX != null)
+            _flingX.stop();
+        if (_flingY != null)
+            _flingY.stop();
+        int maxX = Math.max(_rect.width() - _parent._rect.width(), 0);
+        int maxY = Math.max(_rect.height() - _parent._rect.height(), 0);
+        _scrollPos.x = Math.min(Math.max(_scrollPos.x, 0), maxX);
+        _scrollPos.y = Math.min(Math.max(_scrollPos.y, 0), maxY);
+    }
+
+    private Fling createFling() {
+        DisplayMetrics metrics = _env.getDisplayMetrics();
+        return new Fling(metrics != null? metrics.density: Resources.getSystem().getDisplayMetrics().density);
+    }
+
+    //starts inertial scroll with release velocity, snap points of container move the final position
+    private void startFling(boolean horizontal, float velocity, int range, long time) {
+        Fling fling = horizontal? _flingX: _flingY;
+        if (fling == null) {
+            fling = createFling();
+            if (horizontal)
+                _flingX = fling;
+            else
+                _flingY = fling;
         }
+        DisplayMetrics metrics = _env.getDisplayMetrics();
+        float overscroll = _parent._overscroll? OverscrollDistance * (metrics != null? metrics.density: 1): 0;
+        float position = horizontal? _scrollPos.x: _scrollPos.y;
+        fling.start(position, velocity, 0, range, overscroll, time);
+        if (horizontal? _parent._snapX: _parent._snapY)
+            fling.setFinalPosition(findSnapPosition(horizontal, fling.getFinalPosition(), range), time);
+        if (fling.isActive())
+            startAnimating();
+    }
 
-        if (t >= 1.0f) {
-            Log.v(TAG, "scroll finished, stopping");
-            _env.stopAnimation(this);
-            _scrollVelocity = null;
+    //start of the child nearest to given scroll position
+    private float findSnapPosition(boolean horizontal, float position, int range) {
+        if (_children == null)
+            return position;
+        float best = position, bestDistance = Float.MAX_VALUE;
+        for (int i = 0, n = _children.size(); i < n; ++i) {
+            Element child = _children.get(i);
+            int start = horizontal? child.getBaseX(): child.getBaseY();
+            start = Math.min(Math.max(start, 0), range);
+            float distance = Math.abs(start - position);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = start;
+            }
         }
-        emitScroll();
+        return best;
     }
 
     protected Rect createRedrawRect() { return new Rect(); }
@@ -159,36 +243,200 @@ public class Element extends BaseObject {
         //this function tries to calculate rectangle if this element says it's invalidated
         Rect elementRect = createRedrawRect();
 
-        {
-            Rect rect = getScreenRect();
+        Rect rect = getScreenRect();
+        Matrix transform = getTransform(rect);
+        if (transform != null) {
+            //content is not repainted, new bounds are last painted ones under new transform
+            rect.union(_combinedRect);
+            rect.union(_lastRect);
+            mapRect(transform, rect);
+            if (Rect.intersects(rect, clipRect))
+                elementRect.union(rect);
+            if (Rect.intersects(_transformedRect, clipRect))
+                elementRect.union(_transformedRect);
+        } else {
             if (Rect.intersects(rect, clipRect)) {
                 //Log.v(TAG, "screen rect " + rect);
                 elementRect.union(rect);
             }
-        }
 
-        if (Rect.intersects(_combinedRect, clipRect)) {
-            //Log.v(TAG, "combined rect " + rect);
-            elementRect.union(_combinedRect);
-        }
+            if (Rect.intersects(_combinedRect, clipRect)) {
+                //Log.v(TAG, "combined rect " + rect);
+                elementRect.union(_combinedRect);
+            }
 
-        if (Rect.intersects(_lastRect, clipRect)) {
-            //Log.v(TAG, "last rect " + last);
-            elementRect.union(_lastRect);
+            if (Rect.intersects(_lastRect, clipRect)) {
+                //Log.v(TAG, "last rect " + last);
+                elementRect.union(_lastRect);
+            }
         }
         Element parent = _parent;
         while(parent != null) {
             parent._cacheValid = false;
-            if (parent._clip && !elementRect.isEmpty()) {
-                Rect parentRect = parent.getScreenRect(); //fixme: this makes this loop O(N^2)
-                if (!elementRect.intersect(parentRect))
+            parent._changedSincePaint = true;
+            if (!elementRect.isEmpty()) {
+                Rect parentRect = parent.getScreenRect(); //cached origin, O(1) once computed
+                if (parent._clip && !elementRect.intersect(parentRect))
                     elementRect.setEmpty();
+                Matrix parentTransform = parent.getTransform(parentRect);
+                if (parentTransform != null)
+                    mapRect(parentTransform, elementRect);
             }
             parent = parent._parent;
         }
         return elementRect;
     }
 
+    final boolean isTransformed() {
+        return _scale != null || _rotate != 0;
+    }
+
+    //scale and rotate around center of given element rect, null if element has none
+    //the same matrix is returned on every call, it's valid until next call
+    private Matrix getTransform(Rect rect) {
+        if (_scale == null && _rotate == 0)
+            return null;
+        Matrix matrix = _transformMatrix;
+        if (matrix == null)
+            matrix = _transformMatrix = new Matrix();
+        float cx = rect.exactCenterX(), cy = rect.exactCenterY();
+        matrix.reset();
+        if (_rotate != 0)
+            matrix.postRotate(_rotate, cx, cy);
+        if (_scale != null)
+            matrix.postScale(_scale.x, _scale.y, cx, cy);
+        return matrix;
+    }
+
+    private static void mapRect(Matrix matrix, Rect rect) {
+        RectF mapped = _mapRect;
+        mapped.set(rect);
+        matrix.mapRect(mapped);
+        mapped.roundOut(rect);
+    }
+
+    //children origin in screen coordinates, computed lazily from parent chain and cached
+    //valid element always has valid parent, so invalidation can stop at first invalid element
+    private void updateScreenOrigin() {
+        if (_screenOriginValid)
+            return;
+
+        int x = getBaseX() - getScrollXImpl();
+        int y = getBaseY() - getScrollYImpl();
+        Element parent = _parent;
+        if (parent != null) {
+            parent.updateScreenOrigin();
+            x += parent._screenOriginX;
+            y += parent._screenOriginY;
+        }
+        _screenOriginX = x;
+        _screenOriginY = y;
+        _screenOriginValid = true;
+    }
+
+    //called when left/top/transform/scroll/parent changed, invalidates whole subtree
+    final void invalidateScreenOrigin() {
+        if (!_screenOriginValid)
+            return;
+        _screenOriginValid = false;
+        if (_children != null) {
+            for(int i = 0, n = _children.size(); i < n; ++i)
+                _children.get(i).invalidateScreenOrigin();
+        }
+    }
+
+    boolean isGloballyVisible() { return _globallyVisible; }
+
+    //element takes touch down inside its rect
+    protected boolean isHitTarget() {
+        return scrollXEnabled() || scrollYEnabled() || hasCallbackFor(EVENT_MASK_MOUSE);
+    }
+
+    private void updateHitTarget() {
+        boolean hitTarget = isHitTarget();
+        if (hitTarget == _hitTarget)
+            return;
+        _hitTarget = hitTarget;
+        addSubtreeHitTargets(hitTarget? 1: -1);
+        invalidateHitBounds();
+    }
+
+    //invalidates every ancestor: subtrees without targets are skipped by getHitBounds and may stay invalid under valid parents
+    private void addSubtreeHitTargets(int delta) {
+        if (delta == 0)
+            return;
+        for(Element el = this; el != null; el = el._parent) {
+            el._subtreeHitTargets += delta;
+            el._hitBoundsValid = false;
+            if (el._parent != null)
+                el._parent._hitGridValid = false;
+        }
+    }
+
+    //union of own rect if it is hit target and hit bounds of children, scroll applied
+    final Rect getHitBounds() {
+        if (_hitBoundsValid)
+            return _hitBounds;
+
+        Rect bounds = _hitBounds;
+        bounds.setEmpty();
+        _hitBoundsValid = true;
+        if (_subtreeHitTargets == 0)
+            return bounds; //nothing to hit, subtree is not visited
+
+        if (_hitTarget)
+            getRect(bounds);
+        if (_children != null) {
+            int baseX = getBaseX(), baseY = getBaseY();
+            for(int i = 0, n = _children.size(); i < n; ++i) {
+                Element el = _children.get(i);
+                if (el._subtreeHitTargets == 0)
+                    continue;
+                Rect child = el.getHitBounds();
+                if (!child.isEmpty())
+                    bounds.union(child.left + baseX, child.top + baseY, child.right + baseX, child.bottom + baseY);
+            }
+        }
+        bounds.offset(-getScrollXImpl(), -getScrollYImpl());
+        return bounds;
+    }
+
+    //geometry, scroll or listeners changed, stops at first ancestor which is already invalid
+    final void invalidateHitBounds() {
+        Element el = this;
+        while(el._hitBoundsValid) {
+            el._hitBoundsValid = false;
+            Element parent = el._parent;
+            if (parent == null)
+                break;
+            parent._hitGridValid = false;
+            el = parent;
+        }
+    }
+
+    //children added, removed or reordered
+    private void invalidateChildrenHitBounds() {
+        _hitGridValid = false;
+        invalidateHitBounds();
+    }
+
+    @Override
+    protected void onEventMaskChanged(int changed) {
+        if ((changed & EVENT_MASK_MOUSE) != 0)
+            updateHitTarget();
+    }
+
+    private void setScrollEnabled(boolean x, boolean y) {
+        _enableScrollX = x;
+        _enableScrollY = y;
+        //children hit target state depends on it
+        if (_children != null) {
+            for(int i = 0, n = _children.size(); i < n; ++i)
+                _children.get(i).updateHitTarget();
+        }
+        invalidateChildrenHitBounds();
+    }
+
     public void enableCache(boolean enable)
     {
         if (android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
@@ -196,19 +444,93 @@ public class Element extends BaseObject {
             return; //fixme: could not be replayed on hw-accelerated canvas, use software on pre-M ?
         }
 
+        if (_autoCache)
+            releaseAutoCache(); //explicit style takes over
+
         if (_cache != enable) {
             _cache = enable;
             if (!enable)
-                _cachePicture = null;
+                discardDisplayList();
+        }
+    }
+
+    private static boolean contains(Rect rect, Rect inner) {
+        return inner.isEmpty() || rect.contains(inner);
+    }
+
+    private void releaseAutoCache() {
+        _env.getCacheEngine().release(_autoCacheSize);
+        _autoCacheSize = 0;
+        _autoCache = false;
+    }
+
+    private void demoteCache(CacheEngine engine) {
+        releaseAutoCache();
+        _cache = false;
+        _stableFrames = 0;
+        discardDisplayList();
+        engine.onDemote();
+    }
+
+    //called once per painted frame, promotes subtrees repainted without changes, demotes ones changing too often
+    private void updateCachePolicy(CacheEngine engine, Rect rect) {
+        int frame = engine.getFrame();
+        if (_lastPaintFrame == frame)
+            return; //painted again for another damage rect
+        _lastPaintFrame = frame;
+
+        boolean changed = _changedSincePaint;
+        _changedSincePaint = false;
+        _churn += ((changed? 1: 0) - _churn) * CacheEngine.ChurnWeight;
+        _stableFrames = changed? 0: _stableFrames + 1;
+
+        if (_autoCache) {
+            if (!engine.isEnabled() || _churn > CacheEngine.DemoteChurn) {
+                demoteCache(engine);
+            } else if (changed) {
+                long size = CacheEngine.estimateSize(rect.width(), rect.height());
+                if (size != _autoCacheSize) {
+                    engine.release(_autoCacheSize);
+                    _autoCacheSize = 0;
+                    if (engine.reserve(size))
+                        _autoCacheSize = size;
+                    else
+                        demoteCache(engine);
+                }
+            }
+        } else if (!_cache && engine.isEnabled() &&
+                _stableFrames >= CacheEngine.PromoteFrames && _subtreeSize >= CacheEngine.MinSubtreeSize &&
+                contains(rect, _combinedRect) && contains(rect, _lastRect)) { //display list is recorded within element bounds
+            long size = CacheEngine.estimateSize(rect.width(), rect.height());
+            if (size > 0 && engine.reserve(size)) {
+                _cache = _autoCache = true;
+                _autoCacheSize = size;
+                _cacheValid = false;
+                engine.onPromote();
+            }
+        }
+    }
+
+    private void discardDisplayList() {
+        _cacheValid = false;
+        if (_displayList != null) {
+            _displayList.discard();
+            _displayList = null;
         }
     }
 
     public final Rect getRect()
     {
-        Rect rect = new Rect(_rect);
+        Rect rect = new Rect();
+        getRect(rect);
+        return rect;
+    }
+
+    final void getRect(Rect rect)
+    {
+        rect.set(_rect);
         if (_translate != null)
             rect.offset(_translate.x, _translate.y);
-        return rect;
     }
 
     final boolean scrollXEnabled()  { return _parent != null && _parent._enableScrollX; }
@@ -224,7 +546,8 @@ public class Element extends BaseObject {
     }
 
     public final void setScrollX(int x) {
-        Log.d(TAG, "setting scrollX to " + x);
+        if (Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, "setting scrollX to " + x);
         if (!findScrollingElement())
             return;
         if (_scrollingElement._scrollPos == null)
@@ -237,7 +560,8 @@ public class Element extends BaseObject {
     }
 
     public final void setScrollY(int y) {
-        Log.d(TAG, "setting scrollY to " + y);
+        if (Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, "setting scrollY to " + y);
         if (!findScrollingElement())
             return;
         if (_scrollingElement._scrollPos == null)
@@ -300,6 +624,10 @@ public class Element extends BaseObject {
         if (el._parent != null)
             throw new AlreadyHasAParentException();
         el._parent = this;
+        el.invalidateScreenOrigin();
+        el._hitBoundsValid = false;
+        addSubtreeHitTargets(el._subtreeHitTargets);
+        el.updateHitTarget(); //hit target state depends on parent's overflow
         if (_children == null)
             _children = new ArrayList<>();
         return el;
@@ -310,6 +638,7 @@ public class Element extends BaseObject {
         if (el == null)
             return;
         _children.add(el);
+        invalidateChildrenHitBounds();
         el.update();
     }
 
@@ -319,6 +648,7 @@ public class Element extends BaseObject {
             return;
 
         _children.add(0, el);
+        invalidateChildrenHitBounds();
         el.update();
     }
 
@@ -326,19 +656,50 @@ public class Element extends BaseObject {
         if (_parent != null)
             _parent.removeChild(this);
         _parent = null;
+        invalidateScreenOrigin();
     }
 
     @Override
     public void discard() {
+        if (isFlinging() || (_animator != null && _animator.isActive()))
+            _env.stopAnimation(this);
         remove();
-        _cacheValid = false;
-        _cachePicture = null;
+        if (_autoCache)
+            releaseAutoCache();
+        discardDisplayList();
         super.discard();
     }
 
     void update() {
-        _env.update(this);
         _cacheValid = false;
+        _changedSincePaint = true;
+        scheduleUpdate();
+    }
+
+    //position, opacity or transform changed, own display list is drawn with new properties and stays valid
+    final void updateComposition() {
+        scheduleUpdate();
+    }
+
+    private void scheduleUpdate() {
+        if (_updateBatched) {
+            _updatePending = true;
+            return;
+        }
+        _env.update(this);
+    }
+
+    //collapses update() calls until endUpdate(), so element is marked dirty once per batch
+    final void beginUpdate() {
+        _updateBatched = true;
+    }
+
+    final void endUpdate() {
+        _updateBatched = false;
+        if (_updatePending) {
+            _updatePending = false;
+            scheduleUpdate();
+        }
     }
 
     public void updateStyle() {}
@@ -352,8 +713,11 @@ public class Element extends BaseObject {
     }
 
     protected void removeChild(Element child) {
-        if (_children != null)
-            _children.remove(child);
+        if (_children != null && _children.remove(child))
+            addSubtreeHitTargets(-child._subtreeHitTargets);
+        if (_touchChild == child)
+            _touchChild = null;
+        invalidateChildrenHitBounds();
         _lastRect.union(child._lastRect);
         update();
     }
@@ -404,12 +768,12 @@ public class Element extends BaseObject {
                     break;
                 case "scaleX":
                     if (_scale == null)
-                        _scale = new PointF();
+                        _scale = new PointF(1, 1);
                     _scale.x = (float)n;
                     break;
                 case "scaleY":
                     if (_scale == null)
-                        _scale = new PointF();
+                        _scale = new PointF(1, 1);
                     _scale.y = (float)n;
                     break;
                 case "rotate":
@@ -424,14 +788,20 @@ public class Element extends BaseObject {
 
     protected void setStyle(String name, Object value) {
         switch(name) {
-            case "left":    { int left = TypeConverter.toInteger(value);    _rect.right += left - _rect.left; _rect.left = left; } break;
-            case "top":     { int top = TypeConverter.toInteger(value);     _rect.bottom += top - _rect.top; _rect.top = top; } break;
-            case "width":   { int width = TypeConverter.toInteger(value);   _rect.right = _rect.left + width; } break;
-            case "height":  { int height = TypeConverter.toInteger(value);  _rect.bottom = _rect.top + height; } break;
-            case "opacity":     _opacity = TypeConverter.toFloat(value); break;
+            case "left":    { cancelTransitions(1 << PropertyAnimator.Left); int left = TypeConverter.toInteger(value);    _rect.right += left - _rect.left; _rect.left = left; invalidateScreenOrigin(); invalidateHitBounds(); } updateComposition(); return;
+            case "top":     { cancelTransitions(1 << PropertyAnimator.Top); int top = TypeConverter.toInteger(value);     _rect.bottom += top - _rect.top; _rect.top = top; invalidateScreenOrigin(); invalidateHitBounds(); } updateComposition(); return;
+            case "width":   { int width = TypeConverter.toInteger(value);   _rect.right = _rect.left + width; invalidateHitBounds(); } break;
+            case "height":  { int height = TypeConverter.toInteger(value);  _rect.bottom = _rect.top + height; invalidateHitBounds(); } break;
+            case "opacity":     cancelTransitions(1 << PropertyAnimator.Opacity); _opacity = TypeConverter.toFloat(value); updateComposition(); return;
             case "z-index":     _z = TypeConverter.toInteger(value); if (this._parent != null) this._parent.sortChildren(); break;
             case "visibility":  _visible = value.equals("inherit") || value.equals("visible"); break;
-            case "transform": setTransform(value); break;
+            case "transform":
+                cancelTransitions(PropertyAnimator.TransformMask);
+                setTransform(value);
+                invalidateScreenOrigin();
+                invalidateHitBounds();
+                updateComposition(); //transform is applied when display list is drawn
+                return;
             case "-pure-recursive-visibility": {
                 boolean globallyVisible = _globallyVisible;
                 boolean visible = TypeConverter.toBoolean(value);
@@ -442,9 +812,17 @@ public class Element extends BaseObject {
                 break;
             }
 
-            case "overflow":    _enableScrollX = _enableScrollY = getOverflowValue(value); break;
-            case "overflow-x":  _enableScrollX = getOverflowValue(value);  break;
-            case "overflow-y":  _enableScrollY = getOverflowValue(value);  break;
+            case "overflow":    { boolean enable = getOverflowValue(value); setScrollEnabled(enable, enable); } break;
+            case "overflow-x":  setScrollEnabled(getOverflowValue(value), _enableScrollY); break;
+            case "overflow-y":  setScrollEnabled(_enableScrollX, getOverflowValue(value)); break;
+            case "scroll-snap-type": {
+                //proximity is handled as mandatory, fling always ends on a snap point
+                String type = value.toString();
+                _snapX = type.startsWith("x") || type.startsWith("both") || type.startsWith("inline");
+                _snapY = type.startsWith("y") || type.startsWith("both") || type.startsWith("block");
+                return;
+            }
+            case "overscroll-behavior": _overscroll = value.toString().equals("auto"); return;
 
             case "cursor":
             case "pointer-events":
@@ -466,7 +844,107 @@ public class Element extends BaseObject {
     }
 
     protected void onGloballyVisibleChanged(boolean value) { }
-    private void setStyleSafe(String name, Object value) {
+
+    //transition(property, to, duration ms[, easing[, from]]), interpolated natively, "transitionend" is emitted with property name
+    //setting the same property with style() cancels transition without event
+    public void transition(V8Array arguments) {
+        if (arguments.length() < 3)
+            throw new IllegalArgumentException("transition requires property, target value and duration");
+        String name = arguments.getString(0);
+        int property = PropertyAnimator.getProperty(name);
+        if (property < 0)
+            throw new IllegalArgumentException("property " + name + " can't be animated");
+
+        float to = (float)arguments.getDouble(1);
+        long duration = (long)arguments.getDouble(2);
+        Object easingArg = arguments.length() > 3? arguments.get(3): null;
+        String easing = easingArg instanceof String? (String)easingArg: null;
+        if (easingArg instanceof Releasable)
+            ((Releasable)easingArg).release();
+        Object fromArg = arguments.length() > 4? arguments.get(4): null;
+        float from = fromArg instanceof Number? ((Number)fromArg).floatValue(): getAnimatedValue(property);
+        if (fromArg instanceof Releasable)
+            ((Releasable)fromArg).release();
+
+        if (duration <= 0) {
+            cancelTransitions(1 << property);
+            setAnimatedValue(property, to);
+            emit(null, "transitionend", name);
+            return;
+        }
+
+        if (_animator == null)
+            _animator = new PropertyAnimator();
+        _animator.start(property, from, to, SystemClock.uptimeMillis(), duration, PropertyAnimator.getEasing(easing));
+        setAnimatedValue(property, from);
+        startAnimating();
+    }
+
+    private void cancelTransitions(int mask) {
+        if (_animator != null)
+            _animator.cancel(mask);
+    }
+
+    private float getAnimatedValue(int property) {
+        switch(property) {
+            case PropertyAnimator.Opacity:      return _opacity;
+            case PropertyAnimator.Left:         return _rect.left;
+            case PropertyAnimator.Top:          return _rect.top;
+            case PropertyAnimator.TranslateX:   return _translate != null? _translate.x: 0;
+            case PropertyAnimator.TranslateY:   return _translate != null? _translate.y: 0;
+            case PropertyAnimator.ScaleX:       return _scale != null? _scale.x: 1;
+            case PropertyAnimator.ScaleY:       return _scale != null? _scale.y: 1;
+            case PropertyAnimator.Rotate:       return _rotate;
+            default:                            return 0;
+        }
+    }
+
+    //same effect as corresponding setStyle, without cancelling transitions
+    final void setAnimatedValue(int property, float value) {
+        switch(property) {
+            case PropertyAnimator.Opacity:
+                _opacity = value;
+                updateComposition();
+                return;
+            case PropertyAnimator.Left: {
+                int left = Math.round(value);
+                _rect.right += left - _rect.left;
+                _rect.left = left;
+                break;
+            }
+            case PropertyAnimator.Top: {
+                int top = Math.round(value);
+                _rect.bottom += top - _rect.top;
+                _rect.top = top;
+                break;
+            }
+            case PropertyAnimator.TranslateX:
+            case PropertyAnimator.TranslateY:
+                if (_translate == null)
+                    _translate = new Point();
+                if (property == PropertyAnimator.TranslateX)
+                    _translate.x = Math.round(value);
+                else
+                    _translate.y = Math.round(value);
+                break;
+            case PropertyAnimator.ScaleX:
+            case PropertyAnimator.ScaleY:
+                if (_scale == null)
+                    _scale = new PointF(1, 1);
+                if (property == PropertyAnimator.ScaleX)
+                    _scale.x = value;
+                else
+                    _scale.y = value;
+                break;
+            case PropertyAnimator.Rotate:
+                _rotate = value;
+                break;
+        }
+        invalidateScreenOrigin();
+        invalidateHitBounds();
+        updateComposition();
+    }
+    final void setStyleSafe(String name, Object value) {
         try {
             this.setStyle(name, value);
         } catch (Exception ex) {
@@ -478,8 +956,13 @@ public class Element extends BaseObject {
         Object arg0 = arguments.get(0);
         if (arg0 instanceof V8Object) {
             V8Object styles = (V8Object) arg0;
-            for (String key : styles.getKeys())
-                setStyleSafe(key, styles.get(key));
+            beginUpdate();
+            try {
+                for (String key : styles.getKeys())
+                    setStyleSafe(key, styles.get(key));
+            } finally {
+                endUpdate();
+            }
         } else if (arguments.length() == 2) {
             Object value = arguments.get(1);
             setStyleSafe(arguments.getString(0), TypeConverter.getValue(_env, null, value));
@@ -498,6 +981,7 @@ public class Element extends BaseObject {
     }
 
     protected final void beginPaint(PaintState state) {
+        _subtreeSize = 1;
         _lastRect.setEmpty();
         _combinedRect.setEmpty();
         if (_paintDelegate != null)
@@ -516,43 +1000,85 @@ public class Element extends BaseObject {
         return _rect.top + (_translate != null? _translate.y: 0);
     }
 
-    @SuppressWarnings("unchecked")
     public final void paintChildren(PaintState parent) {
-        if (_children == null)
+        if (_children == null || _children.isEmpty())
             return;
 
-        final ArrayList<Element> children = (ArrayList<Element>)_children.clone();
+        //snapshot children on shared stack, so painting is safe against changes of _children and allocates nothing
+        final int n = _children.size();
+        final int base = _paintStackSize;
+        if (base + n > _paintStack.length)
+            _paintStack = Arrays.copyOf(_paintStack, Math.max(_paintStack.length * 2, base + n));
+        for(int i = 0; i < n; ++i)
+            _paintStack[base + i] = _children.get(i);
+        _paintStackSize = base + n;
+
+        try {
+            paintChildren(parent, base, base + n);
+        } finally {
+            Arrays.fill(_paintStack, base, base + n, null);
+            _paintStackSize = base;
+        }
+    }
+
+    private void paintChildren(PaintState parent, int begin, int end) {
         int scrollX = -getScrollXImpl(), scrollY = -getScrollYImpl();
+        final CacheEngine cacheEngine = _env.getCacheEngine();
 
-        for (Element child : children) {
+        for (int i = begin; i < end; ++i) {
+            final Element child = _paintStack[i]; //stack may be reallocated by nested paint, always read the field
             float opacity = child._opacity * parent.opacity;
             if (!child._visible || !PaintState.visible(opacity)) {
                 child._lastRect.setEmpty();
                 child._combinedRect.setEmpty();
+                child._transformedRect.setEmpty();
                 continue;
             }
 
-            Rect childRect = child.getRect();
+            Rect childRect = child._paintRect;
+            child.getRect(childRect);
             int childX = scrollX + child.getBaseX(), childY = scrollY + child.getBaseY();
             childRect.offsetTo(parent.baseX + childX, parent.baseY + childY);
             int childWidth = childRect.width(), childHeight = childRect.height();
-            boolean cache = child._cache;
             boolean fitParentRect = childRect.contains(_rect);
 
+            //scale and rotate are applied when subtree is drawn, content and its rects stay untransformed
+            final Matrix transform = child.getTransform(childRect);
+            final Rect cullRect = transform == null? parent.cullRect: null; //screen coordinates are unknown under scale/rotate
+
+            if (cullRect != null && child.outsideOf(cullRect, childRect, parent.baseX + childX, parent.baseY + childY)) {
+                //nothing to repaint in this subtree, keep its last painted rects
+                child._combinedRect.union(childRect);
+                _combinedRect.union(child._combinedRect);
+                _lastRect.union(child._lastRect);
+                _subtreeSize += child._subtreeSize;
+                continue;
+            }
+            child._paintX = parent.baseX + childX;
+            child._paintY = parent.baseY + childY;
+
+            child.updateCachePolicy(cacheEngine, childRect);
+            boolean cache = child._cache;
+            if (cache) {
+                if (child._cacheValid)
+                    cacheEngine.onHit();
+                else
+                    cacheEngine.onMiss();
+            }
 
             if (!child._cacheValid) {
                 PaintState state;
                 if (cache) {
-                    if (child._cachePicture == null)
-                        child._cachePicture = new Picture();
-                    state = new PaintState(child._cachePicture, parent, childX, childY, childWidth, childHeight, opacity);
+                    //recorded with full opacity and no transform, both are applied when display list is drawn
+                    child._displayList = DisplayList.obtain(child._displayList, parent.isHardwareAccelerated());
+                    state = PaintState.obtain(child._displayList, parent, childX, childY, childWidth, childHeight, 1.0f);
                 } else {
-                    state = new PaintState(parent, childX, childY, opacity);
+                    state = PaintState.obtain(parent, childX, childY, opacity, cullRect);
                 }
 
                 final boolean clip = child._clip && !cache; //fixme: disable clipping when caching (should be implicit)
                 boolean paint = true;
-                boolean saveCanvasState = clip || _scale != null || _rotate != 0;
+                boolean saveCanvasState = clip || (transform != null && !cache);
                 int canvasRestorePoint;
 
                 if (saveCanvasState)
@@ -562,23 +1088,19 @@ public class Element extends BaseObject {
 
                 try {
 
-                    if (_scale != null) {
-                        //Log.v(TAG, "adjusting scale to " + _scale);
-                        state.scale(_scale.x, _scale.y, state.baseX + childWidth / 2.0f, state.baseY + childHeight / 2.0f);
-                    }
-
-                    if (_rotate != 0) {
-                        state.rotate(_rotate, state.baseX + childWidth / 2.0f, state.baseY + childHeight / 2.0f);
-                    }
+                    if (transform != null && !cache)
+                        state.concatCanvas(transform);
 
                     if (clip) {
                         if (fitParentRect && roundClippingNeeded()) {
-                            Path path = new Path();
+                            Path path = _clipPath;
+                            path.rewind();
                             path.addRoundRect(state.baseX, state.baseY, state.baseX + childWidth, state.baseY + childHeight, _radius, _radius, Path.Direction.CW);
                             if (!state.clipPath(path))
                                 paint = false;
                         } else if (child.roundClippingNeeded()) {
-                            Path path = new Path();
+                            Path path = _clipPath;
+                            path.rewind();
                             path.addRoundRect(state.baseX, state.baseY, state.baseX + childWidth, state.baseY + childHeight, _radius, _radius, Path.Direction.CW);
                             if (!state.clipPath(path))
                                 paint = false;
@@ -602,16 +1124,44 @@ public class Element extends BaseObject {
                     state.end();
                     child._cacheValid = true;
                 }
+                state.recycle();
             }
 
             if (child._cacheValid) {
-                parent.drawPicture(child._cachePicture, parent.baseX + childX, parent.baseY + childY);
+                parent.drawDisplayList(child._displayList, parent.baseX + childX, parent.baseY + childY, opacity, transform);
             }
 
             child._combinedRect.union(childRect);
-            _combinedRect.union(child._combinedRect);
-            _lastRect.union(child._lastRect);
+            if (transform != null) {
+                //parent rects are in parent coordinates, so damage covers transformed bounds
+                Rect bounds = child._transformedRect;
+                bounds.set(child._combinedRect);
+                bounds.union(child._lastRect);
+                mapRect(transform, bounds);
+                _combinedRect.union(bounds);
+                _lastRect.union(bounds);
+            } else {
+                child._transformedRect.setEmpty();
+                _combinedRect.union(child._combinedRect);
+                _lastRect.union(child._lastRect);
+            }
+            _subtreeSize += child._subtreeSize;
+        }
+    }
+
+    //tests if subtree painted last time at the same relative place does not touch repainted area
+    private boolean outsideOf(Rect cullRect, Rect rect, int x, int y) {
+        int dx = x - _paintX, dy = y - _paintY;
+        if (dx != 0 || dy != 0) {
+            //moved along with parent, last painted rects move the same way
+            _combinedRect.offset(dx, dy);
+            _lastRect.offset(dx, dy);
+            _paintX = x;
+            _paintY = y;
         }
+        return !Rect.intersects(cullRect, rect) &&
+            !Rect.intersects(cullRect, _combinedRect) &&
+            !Rect.intersects(cullRect, _lastRect);
     }
 
     public void paint(PaintState state) {
@@ -622,25 +1172,51 @@ public class Element extends BaseObject {
 
     public Rect getScreenRect() {
         Rect rect = getRect();
-        Element el = _parent;
-        while(el != null) {
-            rect.offset(el.getBaseX() - el.getScrollXImpl(), el.getBaseY() - el.getScrollYImpl());
-            el = el._parent;
+        Element parent = _parent;
+        if (parent != null) {
+            parent.updateScreenOrigin();
+            rect.offset(parent._screenOriginX, parent._screenOriginY);
         }
         return rect;
     }
 
     public boolean sendEvent(String keyName, KeyEvent event) {
-        Log.v(TAG, "sending " + keyName + " key...");
+        if (Log.isLoggable(TAG, Log.VERBOSE))
+            Log.v(TAG, "sending " + keyName + " key...");
         return emitUntilTrue(null, "keydown", keyName);
     }
 
     private void emitScroll() {
+        invalidateScreenOrigin();
+        invalidateHitBounds();
         _parent._scrollingElement = this;
+        _scrollEmitPending = false;
+        _env.getImagePrefetcher().onScroll(this);
         _parent.emit(null, "scroll");
         update();
     }
 
+    //touch move: new position is painted right away, script gets one scroll event per frame
+    private void deferScroll() {
+        invalidateScreenOrigin();
+        invalidateHitBounds();
+        _parent._scrollingElement = this;
+        _env.getImagePrefetcher().onScroll(this);
+        update();
+        if (!_scrollEmitPending) {
+            _scrollEmitPending = true;
+            _env.scheduleScroll(this);
+        }
+    }
+
+    //delivers scroll event scheduled by deferScroll
+    void flushScroll() {
+        if (!_scrollEmitPending || _parent == null)
+            return;
+        _scrollEmitPending = false;
+        _parent.emit(null, "scroll");
+    }
+
     public boolean sendEvent(int eventId, int x, int y, MotionEvent event) {
         if (!_globallyVisible)
             return false;
@@ -654,16 +1230,16 @@ public class Element extends BaseObject {
         y += getScrollYImpl();
 
         if (_children != null && (!_useScrollX && !_useScrollY)) {
-            for (int i = _children.size() - 1; i >= 0; --i) {
-                Element child = _children.get(i);
-                int offsetX = x - getBaseX();
-                int offsetY = y - getBaseY();
-                if (_clip && (offsetX < 0 || offsetY < 0 || offsetX > clientWidth || offsetY > clientHeight))
-                    continue;
-
-                if (child.sendEvent(eventId, offsetX, offsetY, event)) {
-                    handled = true;
-                    break;
+            int offsetX = x - getBaseX();
+            int offsetY = y - getBaseY();
+            if (!_clip || (offsetX >= 0 && offsetY >= 0 && offsetX <= clientWidth && offsetY <= clientHeight)) {
+                if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                    _touchChild = sendDownToChildren(eventId, offsetX, offsetY, event);
+                    _touchEventId = eventId;
+                    handled = _touchChild != null;
+                } else if (_touchChild != null && _touchEventId == eventId) {
+                    //rest of the gesture goes along the path which took touch down
+                    handled = _touchChild.sendEvent(eventId, offsetX, offsetY, event);
                 }
             }
         }
@@ -681,10 +1257,7 @@ public class Element extends BaseObject {
                 if (rect.contains(x, y) && (
                          enableScrollX ||
                          enableScrollY ||
-                         hasCallbackFor(EVENT_CLICK) ||
-                         hasCallbackFor(EVENT_MOUSEDOWN) ||
-                         hasCallbackFor(EVENT_MOUSEUP) ||
-                         hasCallbackFor(EVENT_MOUSEMOVE)
+                         hasCallbackFor(EVENT_MASK_MOUSE)
                 )) {
                     if (_motionStartPos == null)
                         _motionStartPos = new Point(); //FIXME: optimise me? (unwrap to 2 int members)
@@ -692,12 +1265,16 @@ public class Element extends BaseObject {
                         _scrollPos = new PointF();
                     if (_scrollOffset == null)
                         _scrollOffset = new PointF();
-                    _scrollVelocity = null;
+                    //touch catches flinging surface, it follows the finger without detection distance
+                    boolean caughtX = _flingX != null && _flingX.isActive();
+                    boolean caughtY = _flingY != null && _flingY.isActive();
+                    stopFling();
                     _eventId = eventId;
                     _motionStartPos.x = (int) event.getX();
                     _motionStartPos.y = (int) event.getY();
-                    _useScrollX = _useScrollY = false;
-                    if (hasCallbackFor(EVENT_MOUSEDOWN))
+                    _useScrollX = caughtX && enableScrollX;
+                    _useScrollY = caughtY && enableScrollY;
+                    if (hasCallbackFor(EVENT_MASK_MOUSEDOWN))
                         emitMouseEvent(EVENT_MOUSEDOWN, x, y, x - rect.left, y - rect.top);
                     return true;
                 } else
@@ -710,17 +1287,6 @@ public class Element extends BaseObject {
                     int dx = (int) (event.getX() - _motionStartPos.x);
                     int dy = (int) (event.getY() - _motionStartPos.y);
                     if (enableScrollX || enableScrollY) {
-                        if (_scrollVelocity != null) {
-                            //pause scrolling surface
-                            if (_scrollVelocity.x != 0) {
-                                _useScrollX = true;
-                                handleMove = true;
-                            } else if (_scrollVelocity.y != 0) {
-                                _useScrollY = true;
-                                handleMove = true;
-                            }
-                        }
-
                         if (!_useScrollX && !_useScrollY) {
                             float distance = (float) Math.hypot(dx, dy);
                             if (distance >= DetectionDistance2) {
@@ -754,7 +1320,6 @@ public class Element extends BaseObject {
                             if (_scrollPos.x + _scrollOffset.x < 0)
                                 _scrollOffset.x = -_scrollPos.x;
 
-                            Log.v(TAG, "adjusting scrollX to " + (_scrollPos.x + _scrollOffset.x));
                             handleMove = true;
                         }
 
@@ -767,14 +1332,13 @@ public class Element extends BaseObject {
                             if (_scrollPos.y + _scrollOffset.y < 0)
                                 _scrollOffset.y = -_scrollPos.y;
 
-                            Log.v(TAG, "adjusting scrollY to " + (_scrollPos.y + _scrollOffset.y));
                             handleMove = true;
                         }
                         if (handleMove) {
-                            emitScroll();
+                            deferScroll();
                         }
                         return handleMove;
-                    } else if (hasCallbackFor(EVENT_MOUSEMOVE)) {
+                    } else if (hasCallbackFor(EVENT_MASK_MOUSEMOVE)) {
                         emitMouseEvent(EVENT_MOUSEMOVE, x, y, x - rect.left, y - rect.top);
                         return true;
                     }
@@ -788,26 +1352,24 @@ public class Element extends BaseObject {
                 boolean scrollUsed = scrollUsed();
                 Log.v(TAG, "handled by parent " + handled + ", parent scroll: " + scrollUsed);
                 if (_useScrollX || _useScrollY) {
+                    boolean useScrollX = _useScrollX, useScrollY = _useScrollY;
                     _useScrollX = _useScrollY = false;
                     _scrollPos.x += _scrollOffset.x;
                     _scrollPos.y += _scrollOffset.y;
                     Log.d(TAG, "scrolling finished at " + _scrollOffset + ", final position: " + _scrollPos);
                     boolean noScroll = _scrollOffset.x == 0 && _scrollOffset.y == 0;
 
-                    if (!noScroll) {
-                        float delta = (event.getEventTime() - event.getDownTime()) / 1000.0f;
-                        PointF scrollVelocity = new PointF(_scrollOffset.x / delta, _scrollOffset.y / delta);
-                        if (scrollVelocity.length() >= MinimumScrollVelocity) {
-                            Log.v(TAG, "scroll velocity: " + scrollVelocity);
-                            if (_scrollInterpolator == null)
-                                _scrollInterpolator = new DecelerateInterpolator(DecelerateInterpolatorOrder);
-
-                            _scrollTimeBase = _scrollTimeLast = SystemClock.elapsedRealtime();
-                            _scrollVelocity = scrollVelocity;
-                            _env.startAnimation(this, ScrollDuration);
-                        } else
-                            Log.v(TAG, "ignoring scroll, less than limit");
-                    }
+                    //release velocity estimated from recent touch samples, scroll moves against the finger
+                    //slow release still settles on snap point or comes back from overscroll
+                    _env.getTouchVelocity(_velocity);
+                    float velocityX = useScrollX? -_velocity.x: 0, velocityY = useScrollY? -_velocity.y: 0;
+                    if (Math.hypot(velocityX, velocityY) < MinimumScrollVelocity)
+                        velocityX = velocityY = 0;
+                    long time = event.getEventTime(); //same time base as frame time
+                    if (useScrollX)
+                        startFling(true, velocityX, Math.max(clientWidth - w, 0), time);
+                    if (useScrollY)
+                        startFling(false, velocityY, Math.max(clientHeight - h, 0), time);
 
                     _scrollOffset = null;
 
@@ -819,11 +1381,11 @@ public class Element extends BaseObject {
                     Log.v(TAG, "handled by parent");
                     return true;
                 } else if (!scrollUsed && rect.contains(x, y)) {
-                    if (hasCallbackFor(EVENT_MOUSEUP)) {
+                    if (hasCallbackFor(EVENT_MASK_MOUSEUP)) {
                         emitMouseEvent(EVENT_MOUSEUP, x, y, x - rect.left, y - rect.top);
                         handled = true;
                     }
-                    if (hasCallbackFor(EVENT_CLICK)) {
+                    if (hasCallbackFor(EVENT_MASK_CLICK)) {
                         emitMouseEvent(EVENT_CLICK, x, y, x - rect.left, y - rect.top);
                         handled = true;
                     }
@@ -836,8 +1398,39 @@ public class Element extends BaseObject {
         }
     }
 
+    //returns child which took touch down, children without hit target under the point are skipped
+    private Element sendDownToChildren(int eventId, int x, int y, MotionEvent event) {
+        final ArrayList<Element> children = _children;
+        if (children.size() >= HitGridMinChildren && !_enableScrollX && !_enableScrollY) {
+            if (_hitGrid == null) {
+                _hitGrid = new HitGrid();
+                _hitGridValid = false;
+            }
+            if (!_hitGridValid) {
+                _hitGrid.build(children);
+                _hitGridValid = true;
+            }
+            int[] candidates = _hitGrid.query(x, y);
+            for (int i = candidates.length - 1; i >= 0; --i) {
+                Element child = children.get(candidates[i]);
+                if (child.getHitBounds().contains(x, y) && child.sendEvent(eventId, x, y, event))
+                    return child;
+            }
+            return null;
+        }
+
+        _hitGrid = null;
+        for (int i = children.size() - 1; i >= 0; --i) {
+            Element child = children.get(i);
+            if (child._subtreeHitTargets != 0 && child.getHitBounds().contains(x, y) && child.sendEvent(eventId, x, y, event))
+                return child;
+        }
+        return null;
+    }
+
     protected void emitMouseEvent(final String name, int x, int y, int relX, int relY) {
-        Log.d(TAG, "emitting " + name + ", position: " + relX + ", " + relY);
+        if (Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, "emitting " + name + ", position: " + relX + ", " + relY);
         V8Object mouseEvent = new V8Object(_env.getRuntime());
         mouseEvent.add("clientX", x);
         mouseEvent.add("clientY", y);
@@ -871,18 +1464,22 @@ public class Element extends BaseObject {
     public void focus() {}
     public void blur() {}
 
+    //returned rect is reused by next call, valid until the end of paint()
     public Rect getDstRect(PaintState state) {
-        Rect rect = new Rect(0, 0, _rect.width(), _rect.height());
+        Rect rect = _dstRect;
+        rect.set(0, 0, _rect.width(), _rect.height());
         rect.offset(state.baseX, state.baseY);
         return rect;
     }
 
+    //returned paint is shared, it must be used right away before next patchAlpha call
     static Paint patchAlpha(Paint paint, int alpha, float opacity) {
         alpha = (int)(alpha * opacity);
         if (alpha <= 0)
             return null;
 
-        Paint alphaPaint = new Paint(paint);
+        Paint alphaPaint = _alphaPaint;
+        alphaPaint.set(paint);
         alphaPaint.setAlpha(alpha);
         return alphaPaint;
     }
@@ -897,5 +1494,6 @@ public class Element extends BaseObject {
 
     protected final void sortChildren() {
         Collections.sort(_children, new ZComparator());
+        invalidateChildrenHitBounds();
     }
 }
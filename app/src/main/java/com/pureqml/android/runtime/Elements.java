@@ -0,0 +1,14 @@
+package com.pureqml.android.runtime;
+
+//element api used by execution environment; it's package-private in Element, so script prototypes don't export it
+public final class Elements {
+    private Elements() { }
+
+    public static boolean isGloballyVisible(Element el) {
+        return el.isGloballyVisible();
+    }
+
+    public static void flushScroll(Element el) {
+        el.flushScroll();
+    }
+}
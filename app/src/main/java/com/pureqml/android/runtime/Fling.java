@@ -0,0 +1,180 @@
+package com.pureqml.android.runtime;
+
+import android.view.ViewConfiguration;
+
+//one axis of inertial scroll: spline deceleration of android OverScroller, critically damped spring for bounce and snap
+//positions are in pixels, velocities in px/s, times are frame times in milliseconds, nothing is allocated after construction
+final class Fling {
+    private static final int    Idle = 0;
+    private static final int    Spline = 1;
+    private static final int    Spring = 2;
+
+    private static final float  DecelerationRate = (float)(Math.log(0.78) / Math.log(0.9));
+    private static final float  Inflexion = 0.35f; //tension lines cross at (Inflexion, 1)
+    private static final float  StartTension = 0.5f;
+    private static final float  EndTension = 1.0f;
+    private static final float  P1 = StartTension * Inflexion;
+    private static final float  P2 = 1.0f - EndTension * (1.0f - Inflexion);
+    private static final float  GravityEarth = 9.80665f;
+    private static final int    Samples = 100;
+    private static final float[] SplinePosition = new float[Samples + 1];
+
+    private static final float  SpringFrequency = 12; //rad/s, settles in about half a second
+    private static final float  RestDistance = 0.5f;
+
+    static {
+        //position on spline for uniformly distributed time, same table as OverScroller builds
+        float xMin = 0.0f;
+        for (int i = 0; i < Samples; ++i) {
+            final float alpha = (float) i / Samples;
+            float xMax = 1.0f;
+            float x, tx, coef;
+            while (true) {
+                x = xMin + (xMax - xMin) / 2.0f;
+                coef = 3.0f * x * (1.0f - x);
+                tx = coef * ((1.0f - x) * P1 + x * P2) + x * x * x;
+                if (Math.abs(tx - alpha) < 1E-5)
+                    break;
+                if (tx > alpha)
+                    xMax = x;
+                else
+                    xMin = x;
+            }
+            SplinePosition[i] = coef * ((1.0f - x) * StartTension + x) + x * x * x;
+        }
+        SplinePosition[Samples] = 1.0f;
+    }
+
+    private final float _physicalCoeff;
+    private final float _friction = ViewConfiguration.getScrollFriction();
+
+    private int         _state = Idle;
+    private long        _startTime;
+    private float       _start;         //position at the beginning of current phase
+    private float       _distance;      //spline distance, signed
+    private int         _duration;      //spline duration, ms
+    private float       _velocity;      //initial velocity of current phase
+    private float       _rest;          //spring rest position
+    private float       _omega;         //spring frequency
+    private float       _min;
+    private float       _max;
+    private float       _overscroll;    //maximum bounce distance past the edge, 0 disables bounce
+    private float       _position;
+    private float       _currentVelocity;
+
+    Fling(float density) {
+        float ppi = density * 160.0f;
+        _physicalCoeff = GravityEarth * 39.37f * ppi * 0.84f; //inch/meter, look and feel tuning
+    }
+
+    boolean isActive()          { return _state != Idle; }
+    float getPosition()         { return _position; }
+    float getFinalPosition()    { return _state == Spline? _start + _distance: _state == Spring? _rest: _position; }
+
+    void stop() {
+        _state = Idle;
+        _currentVelocity = 0;
+    }
+
+    //starts fling from given position, zero velocity only brings position back into range
+    void start(float position, float velocity, float min, float max, float overscroll, long time) {
+        _position = position;
+        _min = min;
+        _max = max;
+        _overscroll = overscroll;
+        _startTime = time;
+        _currentVelocity = velocity;
+
+        if (position < min || position > max) {
+            startSpring(position, velocity, position < min? min: max, time);
+            return;
+        }
+        if (velocity == 0) {
+            _state = Idle;
+            return;
+        }
+
+        double l = Math.log(Inflexion * Math.abs(velocity) / (_friction * _physicalCoeff));
+        _duration = (int) (1000.0 * Math.exp(l / (DecelerationRate - 1.0)));
+        _distance = Math.signum(velocity) * (float) (_friction * _physicalCoeff * Math.exp(DecelerationRate / (DecelerationRate - 1.0) * l));
+        _start = position;
+        _velocity = velocity;
+        _state = _duration > 0? Spline: Idle;
+    }
+
+    //moves end of current motion, used for snapping; spline keeps its duration and is scaled to the new distance
+    void setFinalPosition(float position, long time) {
+        if (_state == Spline)
+            _distance = position - _start;
+        else if (Math.abs(position - _position) >= RestDistance)
+            startSpring(_position, _currentVelocity, position, time);
+    }
+
+    private void startSpring(float position, float velocity, float rest, long time) {
+        _state = Spring;
+        _startTime = time;
+        _start = position;
+        _velocity = velocity;
+        _rest = rest;
+        //peak of critically damped motion from rest is v / (omega * e), keep it within overscroll distance
+        float omega = SpringFrequency;
+        if (_overscroll > 0 && position == rest)
+            omega = Math.max(omega, Math.abs(velocity) / ((float) Math.E * _overscroll));
+        _omega = omega;
+    }
+
+    //advances motion to frame time, returns false when finished
+    boolean update(long time) {
+        switch (_state) {
+            case Spline: {
+                long elapsed = time - _startTime;
+                if (elapsed < 0)
+                    elapsed = 0;
+                if (elapsed >= _duration) {
+                    _position = _start + _distance;
+                    _currentVelocity = 0;
+                    _state = Idle;
+                } else {
+                    float t = (float) elapsed / _duration;
+                    int index = (int) (Samples * t);
+                    float tInf = (float) index / Samples, tSup = (float) (index + 1) / Samples;
+                    float dInf = SplinePosition[index], dSup = SplinePosition[index + 1];
+                    float velocityCoef = (dSup - dInf) / (tSup - tInf);
+                    _position = _start + _distance * (dInf + (t - tInf) * velocityCoef);
+                    _currentVelocity = velocityCoef * _distance / _duration * 1000.0f;
+                }
+
+                if (_position < _min || _position > _max) {
+                    float edge = _position < _min? _min: _max;
+                    if (_overscroll > 0 && _currentVelocity != 0) {
+                        startSpring(edge, _currentVelocity, edge, time);
+                        _position = edge;
+                    } else {
+                        _position = edge;
+                        _currentVelocity = 0;
+                        _state = Idle;
+                    }
+                }
+                return _state != Idle;
+            }
+
+            case Spring: {
+                //x(t) = rest + (d + (v + w * d) * t) * e^(-w * t)
+                float t = Math.max(time - _startTime, 0) / 1000.0f;
+                float w = _omega, d = _start - _rest, b = _velocity + w * d;
+                float decay = (float) Math.exp(-w * t);
+                _position = _rest + (d + b * t) * decay;
+                _currentVelocity = (_velocity - w * b * t) * decay;
+                if (Math.abs(_position - _rest) < RestDistance && Math.abs(_currentVelocity) < w * RestDistance) {
+                    _position = _rest;
+                    _currentVelocity = 0;
+                    _state = Idle;
+                }
+                return _state != Idle;
+            }
+
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.pureqml.android.runtime;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+
+//uniform grid over children hit bounds of large containers
+//each cell lists indices of children which may contain a point inside it, in z order
+final class HitGrid {
+    private static final int[] Empty = new int[0];
+
+    private final Rect  _bounds = new Rect();
+    private int         _columns;
+    private int         _rows;
+    private int         _cellWidth;
+    private int         _cellHeight;
+    private int[][]     _cells;
+
+    void build(ArrayList<Element> children) {
+        final int n = children.size();
+        _bounds.setEmpty();
+        for(int i = 0; i < n; ++i)
+            _bounds.union(children.get(i).getHitBounds());
+
+        if (_bounds.isEmpty()) {
+            _cells = null;
+            return;
+        }
+
+        //about one child per cell for uniform grids
+        int side = Math.max(1, (int)Math.sqrt(n));
+        _columns = Math.min(side, _bounds.width());
+        _rows = Math.min(side, _bounds.height());
+        _cellWidth = (_bounds.width() + _columns - 1) / _columns;
+        _cellHeight = (_bounds.height() + _rows - 1) / _rows;
+
+        int[] sizes = new int[_columns * _rows];
+        for(int i = 0; i < n; ++i)
+            addChild(children.get(i).getHitBounds(), i, sizes, null);
+
+        _cells = new int[sizes.length][];
+        for(int c = 0; c < sizes.length; ++c) {
+            _cells[c] = sizes[c] > 0? new int[sizes[c]]: Empty;
+            sizes[c] = 0;
+        }
+        for(int i = 0; i < n; ++i)
+            addChild(children.get(i).getHitBounds(), i, sizes, _cells);
+    }
+
+    //counts child in every cell it overlaps, stores its index too if cells are allocated
+    private void addChild(Rect rect, int index, int[] sizes, int[][] cells) {
+        if (rect.isEmpty())
+            return;
+        int c0 = (rect.left - _bounds.left) / _cellWidth, c1 = (rect.right - 1 - _bounds.left) / _cellWidth;
+        int r0 = (rect.top - _bounds.top) / _cellHeight, r1 = (rect.bottom - 1 - _bounds.top) / _cellHeight;
+        for(int r = r0; r <= r1; ++r) {
+            for(int c = c0; c <= c1; ++c) {
+                int cell = r * _columns + c;
+                if (cells != null)
+                    cells[cell][sizes[cell]] = index;
+                ++sizes[cell];
+            }
+        }
+    }
+
+    //children indices in ascending z order, callers iterate backwards
+    int[] query(int x, int y) {
+        if (_cells == null || !_bounds.contains(x, y))
+            return Empty;
+        int c = (x - _bounds.left) / _cellWidth;
+        int r = (y - _bounds.top) / _cellHeight;
+        return _cells[r * _columns + c];
+    }
+}
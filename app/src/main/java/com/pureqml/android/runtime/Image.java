@@ -27,6 +27,21 @@ public final class Image extends Element implements ImageLoadedCallback {
     URI                         _url;
     V8Function                  _callback;
     final Paint                 _paint;
+    private final Rect          _srcRect = new Rect();
+    private Bitmap              _bitmap; //last painted bitmap, referenced until other one is painted
+    private boolean             _prefetched; //load was moved by prefetcher, cleared when image is shown
+    private int                 _prefetchPriority = -1;
+    private long                _prefetchedBytes;
+    int                         _prefetchGeneration; //prediction of ImagePrefetcher which found it last
+    private boolean             _subscribePending; //load() came before size, see subscribe()
+
+    //script thread, posted by load() when size is not known yet
+    private final Runnable      _subscribe = new SafeRunnable() {
+        @Override
+        public void doRun() {
+            subscribe();
+        }
+    };
 
     private enum Position { LeftOrTop, Center, RightOrBottom }
 
@@ -172,10 +187,15 @@ public final class Image extends Element implements ImageLoadedCallback {
     @Override
     public void discard() {
         super.discard();
+        resetPrefetch();
         if (_url != null) {
             _env.getImageLoader().unsubscribe(_url, this);
             _url = null;
         }
+        if (_bitmap != null) {
+            _env.getImageLoader().releaseBitmap(_bitmap);
+            _bitmap = null;
+        }
         setCallback(null);
     }
 
@@ -194,6 +214,7 @@ public final class Image extends Element implements ImageLoadedCallback {
             }
         }
         ImageLoader loader = _env.getImageLoader();
+        resetPrefetch();
         if (_url != null) {
             loader.unsubscribe(_url, this);
             _url = null;
@@ -215,7 +236,77 @@ public final class Image extends Element implements ImageLoadedCallback {
         }
         // Log.v(TAG, "loading " + _url);
         setCallback(callback);
-        loader.subscribe(_url, this);
+        _subscribePending = true;
+        Executor executor = _env.getExecutor();
+        if (getRect().isEmpty() && executor != null)
+            executor.execute(_subscribe); //size is usually set by the same script call, right after load()
+        else
+            subscribe();
+    }
+
+    //requests image for current size, unknown size requests full size image
+    private void subscribe() {
+        if (!_subscribePending || _url == null)
+            return;
+        _subscribePending = false;
+        Rect rect = getRect();
+        _env.getImageLoader().subscribe(_url, rect.width(), rect.height(), getLoadPriority(), this);
+    }
+
+    //images on screen load first, then the ones closer to it, hidden ones last
+    private int getLoadPriority() {
+        if (!_globallyVisible)
+            return ImageLoader.PriorityHidden;
+        Rect surface = _env.getSurfaceGeometry();
+        if (surface == null)
+            return ImageLoader.PriorityVisible;
+        Rect rect = getScreenRect();
+        int dx = Math.max(0, Math.max(surface.left - rect.right, rect.left - surface.right));
+        int dy = Math.max(0, Math.max(surface.top - rect.bottom, rect.top - surface.bottom));
+        int distance = Math.max(dx, dy);
+        if (distance == 0)
+            return ImageLoader.PriorityVisible;
+        return ImageLoader.PriorityNearby + Math.min(distance, ImageLoader.PriorityHidden - ImageLoader.PriorityNearby - 1);
+    }
+
+    //moves pending load ahead of other offscreen images, returns false if there is nothing left to load
+    boolean prefetch(int priority) {
+        if (_url == null)
+            return false;
+        if (_prefetched && priority == _prefetchPriority)
+            return true;
+        if (!_env.getImageLoader().setPriority(_url, priority))
+            return false;
+        if (!_prefetched) {
+            _prefetched = true;
+            _env.getImagePrefetcher().onPrefetch();
+        }
+        _prefetchPriority = priority;
+        return true;
+    }
+
+    //prediction changed, load goes back to its place by distance to screen
+    void cancelPrefetch() {
+        _prefetchPriority = -1;
+        if (_url != null)
+            _env.getImageLoader().setPriority(_url, getLoadPriority());
+    }
+
+    //prefetched image which goes away before it's shown is accounted as wasted
+    private void resetPrefetch() {
+        if (!_prefetched)
+            return;
+        _env.getImagePrefetcher().onWasted(_prefetchedBytes);
+        _prefetched = false;
+        _prefetchPriority = -1;
+        _prefetchedBytes = 0;
+    }
+
+    @Override
+    protected void onGloballyVisibleChanged(boolean value) {
+        super.onGloballyVisibleChanged(value);
+        if (_url != null)
+            _env.getImageLoader().setPriority(_url, getLoadPriority());
     }
 
     private static final String regexWS = "\\s+";
@@ -277,7 +368,7 @@ public final class Image extends Element implements ImageLoadedCallback {
     }
 
     @Override
-    public void onImageLoaded(final URI url, final Bitmap bitmap) {
+    public void onImageLoaded(final URI url, final Bitmap bitmap, final int width, final int height) {
         Executor executor = _env.getExecutor();
         if (executor == null) {
             Log.d(TAG, "skipping callback, executor is dead");
@@ -292,6 +383,8 @@ public final class Image extends Element implements ImageLoadedCallback {
                 }
 
                 Log.v(TAG, "image bitmap: " + _url + " -> " + bitmap);
+                if (_prefetched && bitmap != null)
+                    _prefetchedBytes = bitmap.getAllocationByteCount();
 
                 if (_callback == null || _callback.isReleased()) {
                     update();
@@ -301,8 +394,8 @@ public final class Image extends Element implements ImageLoadedCallback {
                 try (V8Array args = new V8Array(_env.getRuntime())) {
                     if (bitmap != null) {
                         V8Object metrics = new V8Object(_env.getRuntime());
-                        metrics.add("width", bitmap.getWidth());
-                        metrics.add("height", bitmap.getHeight());
+                        metrics.add("width", width);
+                        metrics.add("height", height);
                         args.push(metrics);
 
                         try {
@@ -334,16 +427,36 @@ public final class Image extends Element implements ImageLoadedCallback {
         if (_url != null) {
             Rect dst = getDstRect(state);
             Bitmap bitmap = null;
+            Rect surface = _env.getSurfaceGeometry();
+            boolean onScreen = surface != null && Rect.intersects(getScreenRect(), surface);
 
+            ImageLoader loader = _env.getImageLoader();
             try {
-                bitmap = _env.getImageLoader().getBitmap(_url);
+                //display lists are recorded offscreen too, they keep their place by distance to screen
+                int priority = onScreen? ImageLoader.PriorityVisible: getLoadPriority();
+                if (!dst.isEmpty()) //nothing to draw, and empty size would request full size image
+                    bitmap = loader.getBitmap(_url, dst.width(), dst.height(), priority);
             } catch(Exception ex) {
                 Log.w(TAG, "image loading failed", ex);
             }
+            if (bitmap != _bitmap) {
+                loader.retainBitmap(bitmap);
+                loader.releaseBitmap(_bitmap);
+                _bitmap = bitmap;
+            }
+            if (_prefetched && onScreen) {
+                //first time on screen, display list recorded offscreen doesn't count
+                ImagePrefetcher prefetcher = _env.getImagePrefetcher();
+                if (bitmap != null)
+                    prefetcher.onHit();
+                else
+                    prefetcher.onLate();
+                _prefetched = false;
+                _prefetchPriority = -1;
+                _prefetchedBytes = 0;
+            }
 
             if (bitmap != null) {
-                _paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
-
                 Paint paint = patchAlpha(_paint, 255, state.opacity);
                 if (paint != null) {
                     boolean clip = _backgroundX.needClip(_backgroundY);
@@ -355,7 +468,8 @@ public final class Image extends Element implements ImageLoadedCallback {
                     }
 
                     if (doPaint) {
-                        Rect src = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+                        Rect src = _srcRect;
+                        src.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
                         _backgroundX.merge(_backgroundY, dst, src);
                         state.drawBitmap(bitmap, src, dst, paint);
                     }
@@ -0,0 +1,190 @@
+package com.pureqml.android.runtime;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import com.pureqml.android.ImageLoader;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+//moves pending loads of images which are about to be scrolled into view ahead of other offscreen images
+//scroll velocity of every scrolled container is measured on each frame, images the viewport reaches within
+//PrefetchTime are prefetched in order of arrival; when scroll changes direction or passes them, they get
+//their distance based priority back
+public final class ImagePrefetcher {
+    static final int    PrefetchTime    = 500;      //ms of scroll predicted ahead of viewport
+    static final int    PriorityStep    = 50;       //ms, arrival time is quantized, so loads are not requeued every frame
+    static final float  MinVelocity     = 0.05f;    //px/ms, slower scroll is not predicted
+    static final float  VelocityWeight  = 0.5f;     //moving average weight of velocity measured in last frame
+    static final int    IdleFrames      = 2;        //container is forgotten after this many frames without scroll
+
+    private static final class Track {
+        float               x, y;       //scroll position at last update
+        float               vx, vy;     //px/ms
+        long                time;
+        int                 idle;       //updates without scroll
+        ArrayList<Image>    images = new ArrayList<>(); //prefetched by last prediction
+    }
+
+    private final IdentityHashMap<Element, Track>   _tracks = new IdentityHashMap<>();
+    private ArrayList<Image>                        _predicted = new ArrayList<>();
+    private final Rect                              _view = new Rect();     //viewport in coordinates of scrolled children
+    private final Rect                              _ahead = new Rect();    //viewport extended by predicted travel
+    private final Rect                              _childRect = new Rect();
+    private float                                   _vx, _vy;
+    private int                                     _generation;
+
+    private long    _requests;
+    private long    _hits;
+    private long    _late;
+    private long    _wasted;
+    private long    _wastedBytes;
+
+    //called by scrolled element, its children move under viewport of its parent
+    void onScroll(Element el) {
+        Track track = _tracks.get(el);
+        if (track == null) {
+            track = new Track();
+            track.x = el.getScrollXImpl();
+            track.y = el.getScrollYImpl();
+            _tracks.put(el, track);
+        }
+        track.idle = 0;
+    }
+
+    //called on every frame after scroll animations are advanced, before painting
+    public void update(long time) {
+        if (_tracks.isEmpty())
+            return;
+
+        Iterator<Map.Entry<Element, Track>> it = _tracks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Element, Track> entry = it.next();
+            Element el = entry.getKey();
+            Track track = entry.getValue();
+            if (track.idle++ > IdleFrames || el._parent == null) {
+                //scroll stopped, images predicted last are next to viewport and keep their priority
+                it.remove();
+                continue;
+            }
+
+            float x = el.getScrollXImpl(), y = el.getScrollYImpl();
+            long dt = time - track.time;
+            if (track.time != 0 && dt > 0) {
+                track.vx += ((x - track.x) / dt - track.vx) * VelocityWeight;
+                track.vy += ((y - track.y) / dt - track.vy) * VelocityWeight;
+            }
+            track.x = x;
+            track.y = y;
+            track.time = time;
+            predict(el, track);
+        }
+    }
+
+    private void predict(Element el, Track track) {
+        ++_generation;
+        ArrayList<Image> predicted = _predicted;
+        _vx = Math.abs(track.vx) >= MinVelocity? track.vx: 0;
+        _vy = Math.abs(track.vy) >= MinVelocity? track.vy: 0;
+        if (_vx != 0 || _vy != 0) {
+            Rect viewport = _childRect;
+            el._parent.getRect(viewport);
+            int left = (int)track.x - el.getBaseX(), top = (int)track.y - el.getBaseY();
+            _view.set(left, top, left + viewport.width(), top + viewport.height());
+
+            Rect ahead = _ahead;
+            ahead.set(_view);
+            int dx = (int)(_vx * PrefetchTime), dy = (int)(_vy * PrefetchTime);
+            if (dx > 0)
+                ahead.right += dx;
+            else
+                ahead.left += dx;
+            if (dy > 0)
+                ahead.bottom += dy;
+            else
+                ahead.top += dy;
+
+            collect(el, 0, 0, predicted);
+        }
+
+        //the rest was passed or is behind now
+        ArrayList<Image> previous = track.images;
+        for(int i = 0, n = previous.size(); i < n; ++i) {
+            Image image = previous.get(i);
+            if (image._prefetchGeneration != _generation)
+                image.cancelPrefetch();
+        }
+        previous.clear();
+        track.images = predicted;
+        _predicted = previous;
+    }
+
+    //visits subtrees intersecting predicted area, x and y are origin of el children in coordinates of scrolled children
+    private void collect(Element el, int x, int y, ArrayList<Image> predicted) {
+        ArrayList<Element> children = el._children;
+        if (children == null)
+            return;
+        for(int i = 0, n = children.size(); i < n; ++i) {
+            Element child = children.get(i);
+            if (!child._visible)
+                continue;
+            Rect rect = _childRect;
+            child.getRect(rect);
+            rect.offset(x, y);
+            boolean sized = !rect.isEmpty();
+            if (sized && !Rect.intersects(rect, _ahead))
+                continue; //subtrees of unsized items may still reach predicted area
+
+            if (sized && child instanceof Image && !Rect.intersects(rect, _view)) {
+                Image image = (Image)child;
+                int priority = ImageLoader.PriorityPrefetch + getArrivalTime(rect) / PriorityStep;
+                if (image.prefetch(priority)) {
+                    image._prefetchGeneration = _generation;
+                    predicted.add(image);
+                }
+            }
+            collect(child, rect.left - child.getScrollXImpl(), rect.top - child.getScrollYImpl(), predicted);
+        }
+    }
+
+    //ms until rect enters the viewport at current velocity
+    private int getArrivalTime(Rect rect) {
+        float tx = 0, ty = 0;
+        if (_vx > 0 && rect.left > _view.right)
+            tx = (rect.left - _view.right) / _vx;
+        else if (_vx < 0 && rect.right < _view.left)
+            tx = (rect.right - _view.left) / _vx;
+        if (_vy > 0 && rect.top > _view.bottom)
+            ty = (rect.top - _view.bottom) / _vy;
+        else if (_vy < 0 && rect.bottom < _view.top)
+            ty = (rect.bottom - _view.top) / _vy;
+        return (int)Math.min(Math.max(tx, ty), PrefetchTime);
+    }
+
+    void onPrefetch()               { ++_requests; }
+    void onHit()                    { ++_hits; }
+    void onLate()                   { ++_late; }    //painted before prefetched load finished
+
+    //prefetched image went away without being shown, bytes of its decoded bitmap were loaded for nothing
+    void onWasted(long bytes) {
+        ++_wasted;
+        _wastedBytes += bytes;
+    }
+
+    public void clear() {
+        _tracks.clear();
+        _predicted.clear();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "prefetched: %d, hits: %d, late: %d, wasted: %d (%dK)",
+                _requests, _hits, _late, _wasted, _wastedBytes / 1024);
+    }
+}
@@ -174,6 +174,11 @@ public final class Input extends Element {
         }
     }
 
+    @Override
+    protected boolean isHitTarget() {
+        return true;
+    }
+
     @Override
     public boolean sendEvent(int id, int x, int y, final MotionEvent event) {
         if (!getRect().contains(x, y))
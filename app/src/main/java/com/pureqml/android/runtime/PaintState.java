@@ -5,58 +5,118 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Picture;
 import android.graphics.Rect;
 import android.graphics.RectF;
 
+import java.util.Arrays;
+
 public final class PaintState {
     public static final float opacityThreshold = 1.0f / 255;
 
-    public final Picture picture;
-    private final Canvas canvas;
-    private final Rect dirtyRect;
-    public final int baseX;
-    public final int baseY;
-    public final int cacheX;
-    public final int cacheY;
-    public final float opacity;
-    public final Matrix transform;
+    //states of paint traversal are pooled, paint runs on script thread only
+    private static PaintState[] _pool = new PaintState[32];
+    private static int          _poolSize;
+
+    //fields below are assigned by constructors and obtain() only
+    DisplayList displayList;
+    private Canvas canvas;
+    private final Rect dirtyRect = new Rect();
+    public int baseX;
+    public int baseY;
+    public int cacheX;
+    public int cacheY;
+    public float opacity;
+    public final Matrix transform = new Matrix();
+    public Rect cullRect; //screen area being repainted, children outside of it may be skipped, null disables culling
+
+    private final RectF _tmpRectF = new RectF();
+    private final Rect _tmpRect = new Rect();
+    private final Paint.FontMetrics _fontMetrics = new Paint.FontMetrics();
+
+    private PaintState() { }
 
     public PaintState(Canvas canvas) {
-        this.picture = null;
+        this(canvas, null);
+    }
+
+    public PaintState(Canvas canvas, Rect cullRect) {
         this.canvas = canvas;
-        this.baseX = this.baseY = 0;
-        this.cacheX = this.cacheY = 0;
-        this.opacity = 1.0f;
-        this.dirtyRect = new Rect();
-        this.transform = new Matrix();
+        this.cullRect = cullRect;
     }
 
     public PaintState(PaintState parent, int x, int y, float opacity) {
-        this.picture = null;
+        set(parent, x, y, opacity, parent.cullRect);
+    }
+
+    public PaintState(PaintState parent, int x, int y, float opacity, Rect cullRect) {
+        set(parent, x, y, opacity, cullRect);
+    }
+
+    private void set(PaintState parent, int x, int y, float opacity, Rect cullRect) {
+        this.displayList = null;
         this.canvas = parent.canvas;
+        this.cullRect = cullRect;
         this.cacheX = parent.cacheX;
         this.cacheY = parent.cacheY;
         this.baseX = parent.baseX + x;
         this.baseY = parent.baseY + y;
         this.opacity = opacity;
-        this.dirtyRect = new Rect();
-        this.transform = new Matrix();
     }
 
-    public PaintState(Picture picture, PaintState parent, int x, int y, int w, int h, float opacity) {
-        this.picture = picture;
-        this.canvas = picture.beginRecording(w, h);
+    private void set(DisplayList displayList, PaintState parent, int x, int y, int w, int h, float opacity) {
+        this.displayList = displayList;
+        this.canvas = displayList.beginRecording(w, h);
+        this.cullRect = null; //recorded picture must be complete
         this.cacheX = this.baseX = parent.baseX + x;
         this.cacheY = this.baseY = parent.baseY + y;
         this.opacity = opacity;
-        this.dirtyRect = new Rect();
-        this.transform = new Matrix();
+    }
+
+    private static PaintState obtain() {
+        return _poolSize > 0? _pool[--_poolSize]: new PaintState();
+    }
+
+    public static PaintState obtain(Canvas canvas, Rect cullRect) {
+        PaintState state = obtain();
+        state.canvas = canvas;
+        state.cullRect = cullRect;
+        state.baseX = state.baseY = 0;
+        state.cacheX = state.cacheY = 0;
+        state.opacity = 1.0f;
+        return state;
+    }
+
+    public static PaintState obtain(PaintState parent, int x, int y, float opacity) {
+        return obtain(parent, x, y, opacity, parent.cullRect);
+    }
+
+    public static PaintState obtain(PaintState parent, int x, int y, float opacity, Rect cullRect) {
+        PaintState state = obtain();
+        state.set(parent, x, y, opacity, cullRect);
+        return state;
+    }
+
+    static PaintState obtain(DisplayList displayList, PaintState parent, int x, int y, int w, int h, float opacity) {
+        PaintState state = obtain();
+        state.set(displayList, parent, x, y, w, h, opacity);
+        return state;
+    }
+
+    //returns state obtained with obtain() to pool, state must not be used after this call
+    public void recycle() {
+        displayList = null;
+        canvas = null;
+        cullRect = null;
+        dirtyRect.setEmpty();
+        transform.reset();
+        if (_poolSize == _pool.length)
+            _pool = Arrays.copyOf(_pool, _poolSize * 2);
+        _pool[_poolSize++] = this;
     }
 
     public void end() {
-        if (picture != null) {
-            picture.endRecording();
+        if (displayList != null) {
+            displayList.endRecording();
         }
     }
 
@@ -109,12 +169,34 @@ public final class PaintState {
         return opacity >= opacityThreshold;
     }
 
-    public void drawPicture(Picture picture, int x, int y) {
-        int saveCount = save();
-        translate(x - cacheX, y - cacheY);
-        canvas.drawPicture(picture);
-        addDirtyRect(0, 0, picture.getWidth(), picture.getHeight());
-        restoreToCount(saveCount);
+    //true for hardware surface canvas and RenderNode recordings, display lists inside may be RenderNodes too
+    public boolean isHardwareAccelerated() {
+        return canvas.isHardwareAccelerated();
+    }
+
+    //applies matrix given in screen coordinates to canvas only, dirty rects stay untransformed
+    void concatCanvas(Matrix matrix) {
+        canvas.translate(-cacheX, -cacheY);
+        canvas.concat(matrix);
+        canvas.translate(cacheX, cacheY);
+    }
+
+    void drawDisplayList(DisplayList displayList, int x, int y, float opacity, Matrix matrix) {
+        if (matrix == null) {
+            displayList.draw(canvas, x - cacheX, y - cacheY, opacity);
+            addDirtyRect(x, y, x + displayList.getWidth(), y + displayList.getHeight());
+            return;
+        }
+
+        //recorded content is reused, only matrix of the draw changes
+        int saveCount = canvas.save();
+        concatCanvas(matrix);
+        displayList.draw(canvas, x - cacheX, y - cacheY, opacity);
+        canvas.restoreToCount(saveCount);
+        RectF rect = _tmpRectF;
+        rect.set(x, y, x + displayList.getWidth(), y + displayList.getHeight());
+        matrix.mapRect(rect);
+        addDirtyRect(rect);
     }
 
     public void drawBitmap(Bitmap bitmap, Rect src, Rect dst,
@@ -128,8 +210,9 @@ public final class PaintState {
     private void updateTextBounds(float dstX, float dstY, int w, Paint paint) {
         int x = (int)Math.floor(dstX);
         int y = (int)Math.floor(dstY);
-        int a = (int)Math.ceil(paint.getFontMetrics().top);
-        int d = (int)Math.ceil(paint.getFontMetrics().bottom);
+        paint.getFontMetrics(_fontMetrics);
+        int a = (int)Math.ceil(_fontMetrics.top);
+        int d = (int)Math.ceil(_fontMetrics.bottom);
         // top/ascent normally is negative, adding it to y.
         addDirtyRect(x, y + a, x + w, y + d);
     }
@@ -158,7 +241,8 @@ public final class PaintState {
 
     public void drawRoundRect(final Rect rect, float rx, float ry, Paint paint) {
         float sw = paint.getStrokeWidth();
-        RectF dst = new RectF(rect);
+        RectF dst = _tmpRectF;
+        dst.set(rect);
         dst.offset(-cacheX, -cacheY);
         canvas.drawRoundRect(dst, rx, ry, paint);
         dst.offset(cacheX, cacheY);
@@ -175,7 +259,7 @@ public final class PaintState {
 
     public void drawRect(Rect rect, Paint paint) {
         rect.offset(-cacheX, -cacheY);
-        canvas.drawRect(new RectF(rect), paint);
+        canvas.drawRect(rect, paint);
         rect.offset(cacheX, cacheY);
         int sw = (int)paint.getStrokeWidth();
         addDirtyRect(rect.left - sw, rect.top - sw, rect.right + sw, rect.bottom + sw);
@@ -189,9 +273,11 @@ public final class PaintState {
         addDirtyRect(rect.left - sw, rect.top - sw, rect.right + sw, rect.bottom + sw);
     }
 
-    private void addTransformedDirtyRect(RectF rect) {
+    private void addTransformedDirtyRect(float x, float y, float r, float b) {
+        RectF rect = _tmpRectF;
+        rect.set(x, y, r, b);
         transform.mapRect(rect);
-        Rect dst = new Rect();
+        Rect dst = _tmpRect;
         rect.round(dst);
         dirtyRect.union(dst);
     }
@@ -200,7 +286,7 @@ public final class PaintState {
         if (transform.isIdentity()) {
             dirtyRect.union(x, y, r, b);
         } else {
-            addTransformedDirtyRect(new RectF(x, y, r, b));
+            addTransformedDirtyRect(x, y, r, b);
         }
     }
 
@@ -208,7 +294,7 @@ public final class PaintState {
         if (transform.isIdentity()) {
             dirtyRect.union((int) Math.floor(x), (int) Math.floor(y), (int) Math.ceil(r), (int) Math.ceil(b));
         } else {
-            addTransformedDirtyRect(new RectF(x, y, r, b));
+            addTransformedDirtyRect(x, y, r, b);
         }
     }
 
@@ -216,7 +302,7 @@ public final class PaintState {
         if (transform.isIdentity()) {
             dirtyRect.union(rect);
         } else {
-            addTransformedDirtyRect(new RectF(rect));
+            addTransformedDirtyRect(rect.left, rect.top, rect.right, rect.bottom);
         }
     }
 
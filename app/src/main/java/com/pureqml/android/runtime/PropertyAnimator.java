@@ -0,0 +1,123 @@
+package com.pureqml.android.runtime;
+
+import android.animation.TimeInterpolator;
+import android.util.Log;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.PathInterpolator;
+
+//native transitions of element composition properties, interpolated on every frame without calling script
+final class PropertyAnimator {
+    private static final String TAG = "PropertyAnimator";
+
+    static final int Opacity    = 0;
+    static final int Left       = 1;
+    static final int Top        = 2;
+    static final int TranslateX = 3;
+    static final int TranslateY = 4;
+    static final int ScaleX     = 5;
+    static final int ScaleY     = 6;
+    static final int Rotate     = 7;
+    static final int Count      = 8;
+
+    static final int TransformMask = (1 << TranslateX) | (1 << TranslateY) | (1 << ScaleX) | (1 << ScaleY) | (1 << Rotate);
+
+    private static final String[] Names = { "opacity", "left", "top", "translateX", "translateY", "scaleX", "scaleY", "rotate" };
+
+    //css timing functions
+    private static final TimeInterpolator Linear    = new LinearInterpolator();
+    private static final TimeInterpolator Ease      = new PathInterpolator(0.25f, 0.1f, 0.25f, 1f);
+    private static final TimeInterpolator EaseIn    = new PathInterpolator(0.42f, 0f, 1f, 1f);
+    private static final TimeInterpolator EaseOut   = new PathInterpolator(0f, 0f, 0.58f, 1f);
+    private static final TimeInterpolator EaseInOut = new PathInterpolator(0.42f, 0f, 0.58f, 1f);
+
+    private final float[]               _from = new float[Count];
+    private final float[]               _to = new float[Count];
+    private final long[]                _start = new long[Count];
+    private final long[]                _duration = new long[Count];
+    private final TimeInterpolator[]    _easing = new TimeInterpolator[Count];
+    private int                         _active; //bitmask of running properties
+
+    static int getProperty(String name) {
+        switch(name) {
+            case "opacity":     return Opacity;
+            case "left":        return Left;
+            case "top":         return Top;
+            case "translateX":  return TranslateX;
+            case "translateY":  return TranslateY;
+            case "scaleX":      return ScaleX;
+            case "scaleY":      return ScaleY;
+            case "rotate":
+            case "rotateZ":     return Rotate;
+            default:            return -1;
+        }
+    }
+
+    static String getName(int property) {
+        return Names[property];
+    }
+
+    static TimeInterpolator getEasing(String name) {
+        if (name == null)
+            return Ease;
+        switch(name) {
+            case "linear":      return Linear;
+            case "ease":        return Ease;
+            case "ease-in":     return EaseIn;
+            case "ease-out":    return EaseOut;
+            case "ease-in-out": return EaseInOut;
+        }
+        if (name.startsWith("cubic-bezier(") && name.endsWith(")")) {
+            String[] points = name.substring(13, name.length() - 1).split(",");
+            if (points.length == 4) {
+                try {
+                    return new PathInterpolator(
+                        Float.parseFloat(points[0].trim()), Float.parseFloat(points[1].trim()),
+                        Float.parseFloat(points[2].trim()), Float.parseFloat(points[3].trim()));
+                } catch (Exception ex) {
+                    Log.w(TAG, "invalid timing function " + name, ex);
+                }
+            }
+        }
+        Log.w(TAG, "unsupported timing function " + name + ", using ease");
+        return Ease;
+    }
+
+    void start(int property, float from, float to, long startTime, long duration, TimeInterpolator easing) {
+        _from[property] = from;
+        _to[property] = to;
+        _start[property] = startTime;
+        _duration[property] = Math.max(duration, 1);
+        _easing[property] = easing;
+        _active |= 1 << property;
+    }
+
+    //returns mask of properties which were running
+    int cancel(int mask) {
+        int cancelled = _active & mask;
+        _active &= ~mask;
+        return cancelled;
+    }
+
+    boolean isActive() { return _active != 0; }
+
+    //applies values for given frame time, returns mask of properties which reached their target
+    int tick(Element el, long frameTime) {
+        int finished = 0;
+        for(int property = 0; property < Count; ++property) {
+            int bit = 1 << property;
+            if ((_active & bit) == 0)
+                continue;
+
+            float t = (float)(frameTime - _start[property]) / _duration[property];
+            if (t >= 1) {
+                t = 1;
+                finished |= bit;
+            } else if (t < 0)
+                t = 0;
+            float from = _from[property];
+            el.setAnimatedValue(property, from + (_to[property] - from) * _easing[property].getInterpolation(t));
+        }
+        _active &= ~finished;
+        return finished;
+    }
+}
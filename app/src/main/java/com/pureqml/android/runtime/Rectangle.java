@@ -2,6 +2,7 @@ package com.pureqml.android.runtime;
 
 import android.graphics.Color;
 import android.graphics.LinearGradient;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
@@ -30,9 +31,17 @@ public final class Rectangle extends Element {
     String          _gradientOrientation = null;
     int[] _gradientColors = null;
     float[] _gradientPositions = null;
+    private LinearGradient  _gradient; //created in local coordinates for _gradientWidth x _gradientHeight
+    private int             _gradientWidth;
+    private int             _gradientHeight;
+    private final Rect      _gradientRect = new Rect();
+    private final Matrix    _gradientMatrix = new Matrix();
+    private final RectF     _borderRect = new RectF();
+
+    private static final PorterDuffXfermode SrcOver = new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER);
 
     private void setupPaint(Paint paint) {
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
+        paint.setXfermode(SrcOver);
     }
 
     public Rectangle(IExecutionEnvironment env) {
@@ -59,6 +68,7 @@ public final class Rectangle extends Element {
         }
         V8Object descriptor = (V8Object)value;
         _gradientOrientation = descriptor.getString("orientation");
+        _gradient = null;
         Log.v(TAG, "gradient orientation: " + _gradientOrientation);
         V8Array stops = descriptor.getArray("stops");
 
@@ -72,8 +82,8 @@ public final class Rectangle extends Element {
         }
     }
 
-    Rect getGradientRect(Rect rect) {
-        Rect r = new Rect(rect);
+    void getGradientRect(Rect rect, Rect r) {
+        r.set(rect);
         switch(_gradientOrientation)
         {
             case "to bottom":
@@ -93,7 +103,26 @@ public final class Rectangle extends Element {
             default:
                 Log.d(TAG, "unsupported gradient orientation");
         }
-        return r;
+    }
+
+    //gradient is recreated only when size changes, position is applied via local matrix
+    private void updateGradient(Rect rect, PaintState state) {
+        int width = rect.width(), height = rect.height();
+        if (_gradient == null || _gradientWidth != width || _gradientHeight != height) {
+            Rect gradientRect = _gradientRect;
+            gradientRect.set(0, 0, width, height);
+            getGradientRect(gradientRect, gradientRect);
+            _gradient = new LinearGradient(
+                    gradientRect.left, gradientRect.top,
+                    gradientRect.right, gradientRect.bottom,
+                    _gradientColors, _gradientPositions, Shader.TileMode.CLAMP
+            );
+            _gradientWidth = width;
+            _gradientHeight = height;
+        }
+        _gradientMatrix.setTranslate(rect.left - state.cacheX, rect.top - state.cacheY); //canvas coordinates, same as drawRect
+        _gradient.setLocalMatrix(_gradientMatrix);
+        _background.setShader(_gradient);
     }
 
     @Override
@@ -130,6 +159,7 @@ public final class Rectangle extends Element {
                 _gradientColors = null;
                 _gradientPositions = null;
                 _gradientOrientation = null;
+                _gradient = null;
                 break;
             case "border-radius":
                 try
@@ -179,19 +209,12 @@ public final class Rectangle extends Element {
         if (_outerBorder && _borderWidth > 0) {
             int bw = (int)_borderWidth;
             rect.offset(bw, bw);
-            childrenState = new PaintState(state, bw, bw, 1.0f);
+            childrenState = PaintState.obtain(state, bw, bw, 1.0f);
         }
 
         if (_background.getColor() != 0 || _gradientOrientation != null) {
-            if (_gradientOrientation != null) {
-                Rect gradientRect = getGradientRect(rect);
-                LinearGradient lg = new LinearGradient(
-                        gradientRect.left, gradientRect.top,
-                        gradientRect.right, gradientRect.bottom,
-                        _gradientColors, _gradientPositions, Shader.TileMode.CLAMP
-                );
-                _background.setShader(lg);
-            }
+            if (_gradientOrientation != null)
+                updateGradient(rect, state);
             else
                 _background.setShader(null);
 
@@ -207,7 +230,8 @@ public final class Rectangle extends Element {
 
         if (_border != null && _borderWidth > 0) {
             Paint paint = patchAlpha(_border, Color.alpha(_borderColor), opacity);
-            RectF borderRect = new RectF(rect);
+            RectF borderRect = _borderRect;
+            borderRect.set(rect);
             float inset = _borderWidth / 2.0f;
             if (_outerBorder)
                 inset -= _borderWidth;
@@ -221,7 +245,11 @@ public final class Rectangle extends Element {
             }
         }
 
-        paintChildren(childrenState != null? childrenState: state);
+        if (childrenState != null) {
+            paintChildren(childrenState);
+            childrenState.recycle();
+        } else
+            paintChildren(state);
         endPaint(state);
     }
 }
@@ -0,0 +1,117 @@
+package com.pureqml.android.runtime;
+
+import android.util.Log;
+
+import com.eclipsesource.v8.Releasable;
+import com.eclipsesource.v8.V8Array;
+import com.pureqml.android.IExecutionEnvironment;
+import com.pureqml.android.TypeConverter;
+
+import java.util.Arrays;
+
+//decoder of packed style batch of fd.applyStyles(layout, strings[, objects]), script thread only
+//layout is flat number array [id, count, name, type, value, ..., id, count, ...], name is index in strings,
+//value is the number itself, 0/1 for booleans or index in strings/objects depending on type
+//layout and strings are read with one native call each, only object values are read one by one
+public final class StyleBatch {
+    private static final String TAG = "rt.StyleBatch";
+
+    public static final int TypeString     = 0;
+    public static final int TypeNumber     = 1;
+    public static final int TypeBoolean    = 2;
+    public static final int TypeNull       = 3;
+    public static final int TypeObject     = 4;
+
+    private static final int Stride = 3; //name, type, value
+
+    private final IExecutionEnvironment _env;
+    private double[]                    _layout = new double[256];
+    private String[]                    _strings = new String[64];
+
+    public StyleBatch(IExecutionEnvironment env) {
+        _env = env;
+    }
+
+    //int32 numbers come as Integer, like values read with V8Array.get
+    private static Object toNumber(double value) {
+        int i = (int)value;
+        return i == value && (i != 0 || 1 / value > 0)? (Object)i: (Object)value;
+    }
+
+    public void apply(V8Array layout, V8Array strings, V8Array objects) {
+        final int n = layout.length();
+        final int m = strings.length();
+        if (n == 0)
+            return;
+        if (_layout.length < n)
+            _layout = new double[Math.max(n, _layout.length * 2)];
+        if (_strings.length < m)
+            _strings = new String[Math.max(m, _strings.length * 2)];
+        layout.getDoubles(0, n, _layout);
+        if (m > 0)
+            strings.getStrings(0, m, _strings);
+
+        try {
+            apply(n, m, objects);
+        } finally {
+            Arrays.fill(_strings, 0, m, null);
+        }
+    }
+
+    private void apply(int n, int m, V8Array objects) {
+        final double[] layout = _layout;
+        final String[] strings = _strings;
+        int i = 0;
+        while (i + 1 < n) {
+            int id = (int)layout[i];
+            int count = (int)layout[i + 1];
+            i += 2;
+
+            BaseObject object = _env.getObjectById(id);
+            Element el = object instanceof Element? (Element)object: null;
+            if (el == null) {
+                Log.w(TAG, "skipping " + count + " styles for invalid element " + id);
+                i += count * Stride;
+                continue;
+            }
+
+            el.beginUpdate();
+            try {
+                for (; count > 0 && i + Stride <= n; --count, i += Stride) {
+                    int name = (int)layout[i];
+                    int type = (int)layout[i + 1];
+                    double value = layout[i + 2];
+                    if (name < 0 || name >= m) {
+                        Log.w(TAG, "invalid style name index " + name);
+                        continue;
+                    }
+                    switch(type) {
+                        case TypeString: {
+                            int index = (int)value;
+                            el.setStyleSafe(strings[name], index >= 0 && index < m? strings[index]: null);
+                            break;
+                        }
+                        case TypeNumber:
+                            el.setStyleSafe(strings[name], toNumber(value));
+                            break;
+                        case TypeBoolean:
+                            el.setStyleSafe(strings[name], value != 0);
+                            break;
+                        case TypeObject: {
+                            Object arg = objects != null? objects.get((int)value): null;
+                            el.setStyleSafe(strings[name], TypeConverter.getValue(_env, null, arg));
+                            if (arg instanceof Releasable)
+                                ((Releasable)arg).release();
+                            break;
+                        }
+                        default:
+                            el.setStyleSafe(strings[name], null);
+                            break;
+                    }
+                }
+            } finally {
+                el.endUpdate();
+            }
+        }
+    }
+}
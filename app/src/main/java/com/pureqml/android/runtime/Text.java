@@ -50,6 +50,7 @@ public final class Text extends Element {
     boolean             _fontItalic = false;
     String              _fontSize = null;
     final float         _lineHeight = ComputedStyle.DefaultLineHeight;
+    private final Rect  _paintTextRect = new Rect();
 
     public Text(IExecutionEnvironment env) {
         super(env);
@@ -237,7 +238,8 @@ public final class Text extends Element {
         layout();
         beginPaint(state);
         if (_text != null) {
-            Rect rect = getRect();
+            Rect rect = _paintTextRect;
+            getRect(rect);
             float textSize = _paint.getTextSize();
             float lineHeight = (_style != null? (_style.lineHeight != null? _style.lineHeight: _lineHeight): _lineHeight) * textSize;
             final int ascent = (int)Math.ceil(-_paint.ascent()); //it's negative, we want positive
@@ -281,7 +283,8 @@ public final class Text extends Element {
                         break;
                 }
                 //Log.v(TAG, "paint: " + _layout + ", halign: " + _halign + ", valign: "  + _valign + ", rect: " + rect);
-                for (TextLayout.Stripe stripe : _layout.stripes) {
+                for (int i = 0, n = _layout.stripes.size(); i < n; ++i) {
+                    TextLayout.Stripe stripe = _layout.stripes.get(i);
                     int dx = 0;
                     switch(_halign) {
                         case AlignHCenter:
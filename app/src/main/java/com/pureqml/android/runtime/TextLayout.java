@@ -3,7 +3,7 @@ package com.pureqml.android.runtime;
 import androidx.annotation.NonNull;
 import android.graphics.Paint;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public final class TextLayout {
@@ -34,7 +34,7 @@ public final class TextLayout {
 
     public TextLayout(String text) {
         this.text = text;
-        this.stripes = new LinkedList<>();
+        this.stripes = new ArrayList<>(); //indexed access in paint
     }
 
     public void add(int start, int end, int width) {
@@ -0,0 +1,207 @@
+package com.pureqml.android.runtime;
+
+//hierarchical timing wheel with millisecond resolution, not thread safe
+//level 0 has one slot per millisecond for the next 256ms, every next level has 64 slots of the previous level range
+//timers are cascaded down when wheel time reaches their slot, expired timers of the same millisecond are reported together
+final class TimerWheel {
+    static class Timer {
+        long    deadline;
+        Timer   prev;
+        Timer   next;
+        int     level = Idle;
+        int     slot;
+    }
+
+    interface Callback {
+        void onExpired(Timer timer);
+    }
+
+    private static final int   Idle = -1;
+    private static final int   Expiring = -2; //in list of timers being reported
+    private static final int   Level0Bits = 8;
+    private static final int   LevelBits = 6;
+    private static final int   Levels = 4;
+    private static final int[] Shifts = { 0, Level0Bits, Level0Bits + LevelBits, Level0Bits + 2 * LevelBits };
+    private static final int[] Sizes = { 1 << Level0Bits, 1 << LevelBits, 1 << LevelBits, 1 << LevelBits };
+    private static final long  MaxDelta = 1L << (Level0Bits + 3 * LevelBits); //~18.6 hours, longer timers are cascaded more than once
+
+    private final Timer[][] _slots = new Timer[Levels][];
+    private final int[]     _counts = new int[Levels];
+    private long            _current;   //next millisecond to be processed
+    private Timer           _expiring;  //head of list of timers being reported
+    private boolean         _reporting;
+
+    TimerWheel(long now) {
+        for(int level = 0; level < Levels; ++level)
+            _slots[level] = new Timer[Sizes[level]];
+        _current = now;
+    }
+
+    int size() {
+        int n = 0;
+        for(int level = 0; level < Levels; ++level)
+            n += _counts[level];
+        return n;
+    }
+
+    void schedule(Timer timer, long deadline) {
+        cancel(timer);
+        timer.deadline = deadline;
+        insert(timer);
+    }
+
+    void cancel(Timer timer) {
+        if (timer.level == Expiring) {
+            if (timer.prev != null)
+                timer.prev.next = timer.next;
+            else
+                _expiring = timer.next;
+            if (timer.next != null)
+                timer.next.prev = timer.prev;
+            timer.prev = timer.next = null;
+            timer.level = Idle;
+        } else if (timer.level != Idle)
+            remove(timer);
+    }
+
+    private void insert(Timer timer) {
+        //timers scheduled from callbacks can't go into the slot being reported
+        long deadline = Math.max(timer.deadline, _reporting? _current + 1: _current);
+        long delta = deadline - _current;
+        if (delta >= MaxDelta)
+            deadline = _current + MaxDelta - 1;
+
+        int level = 0;
+        while(level < Levels - 1 && delta >= (1L << Shifts[level + 1]))
+            ++level;
+        int slot = (int)((deadline >> Shifts[level]) & (Sizes[level] - 1));
+
+        Timer[] slots = _slots[level];
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = slots[slot];
+        if (timer.next != null)
+            timer.next.prev = timer;
+        slots[slot] = timer;
+        ++_counts[level];
+    }
+
+    private void remove(Timer timer) {
+        if (timer.prev != null)
+            timer.prev.next = timer.next;
+        else
+            _slots[timer.level][timer.slot] = timer.next;
+        if (timer.next != null)
+            timer.next.prev = timer.prev;
+        --_counts[timer.level];
+        timer.prev = timer.next = null;
+        timer.level = Idle;
+    }
+
+    //moves timers of current slot of given level to lower levels
+    private void cascade(int level) {
+        int slot = (int)((_current >> Shifts[level]) & (Sizes[level] - 1));
+        Timer timer = _slots[level][slot];
+        _slots[level][slot] = null;
+        while(timer != null) {
+            Timer next = timer.next;
+            --_counts[level];
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    //reports all timers with deadline <= now, callback may schedule or cancel any timer
+    void advance(long now, Callback callback) {
+        while(_current <= now) {
+            if (size() == 0) {
+                _current = now + 1;
+                return;
+            }
+
+            //lower levels are empty, nothing can expire before next boundary of first non-empty level
+            int empty = 0;
+            while(empty < Levels - 1 && _counts[empty] == 0)
+                ++empty;
+            if (empty > 0) {
+                long mask = (1L << Shifts[empty]) - 1;
+                if ((_current & mask) != 0) {
+                    long boundary = (_current | mask) + 1;
+                    if (boundary > now) {
+                        _current = now + 1;
+                        return;
+                    }
+                    _current = boundary;
+                }
+            }
+
+            //cascade every level whose lower level wrapped around
+            for(int level = 1; level < Levels; ++level) {
+                if ((_current & ((1L << Shifts[level]) - 1)) != 0)
+                    break;
+                cascade(level);
+            }
+
+            int slot = (int)(_current & (Sizes[0] - 1));
+            Timer timer = _slots[0][slot];
+            if (timer != null) {
+                _slots[0][slot] = null;
+                for(Timer t = timer; t != null; t = t.next) {
+                    t.level = Expiring;
+                    --_counts[0];
+                }
+                _expiring = timer;
+                _reporting = true;
+                try {
+                    while(_expiring != null) {
+                        timer = _expiring;
+                        _expiring = timer.next;
+                        if (_expiring != null)
+                            _expiring.prev = null;
+                        timer.prev = timer.next = null;
+                        timer.level = Idle;
+                        callback.onExpired(timer);
+                    }
+                } finally {
+                    _reporting = false;
+                    _expiring = null;
+                }
+            }
+            ++_current;
+        }
+    }
+
+    //earliest time advance() has work to do: exact for level 0, slot start for upper levels, Long.MAX_VALUE if empty
+    long nextWakeup() {
+        long wakeup = Long.MAX_VALUE;
+        if (_counts[0] != 0) {
+            int size = Sizes[0];
+            for(int i = 0; i < size; ++i) {
+                long time = _current + i;
+                if (_slots[0][(int)(time & (size - 1))] != null) {
+                    wakeup = time;
+                    break;
+                }
+            }
+        }
+        for(int level = 1; level < Levels; ++level) {
+            if (_counts[level] == 0)
+                continue;
+            int shift = Shifts[level], size = Sizes[level];
+            long index = _current >> shift;
+            //advance() stopped right on slot boundary, current slot is cascaded when it's called next time
+            int first = (_current & ((1L << shift) - 1)) == 0? 0: 1;
+            for(int i = first; i <= size; ++i) {
+                long time = (index + i) << shift;
+                if (time >= wakeup)
+                    break;
+                if (_slots[level][(int)((index + i) & (size - 1))] != null) {
+                    wakeup = time;
+                    break;
+                }
+            }
+        }
+        return wakeup;
+    }
+}
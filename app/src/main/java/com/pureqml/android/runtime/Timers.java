@@ -2,10 +2,10 @@ package com.pureqml.android.runtime;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.SparseArray;
 
-import com.eclipsesource.v8.JavaCallback;
 import com.eclipsesource.v8.JavaVoidCallback;
 import com.eclipsesource.v8.V8;
 import com.eclipsesource.v8.V8Array;
@@ -14,94 +14,104 @@ import com.eclipsesource.v8.V8Object;
 import com.pureqml.android.ExecutionEnvironment;
 import com.pureqml.android.SafeRunnable;
 
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 
+//setTimeout/setInterval on a timer wheel owned by script thread
+//timer thread only wakes script thread once for the earliest deadline, all timers due by then run in one task
 public final class Timers {
     public static final String TAG = "Timers";
 
-    class Task extends SafeRunnable {
+    final class Task extends TimerWheel.Timer {
         final int           _id;
-        V8Object            _callback;
-        final int           _timeout;
-        final boolean       _singleShot;
+        V8Function          _callback;
+        final int           _period; //0 for single shot
 
-        Task(int id, V8Object callback, int timeout, boolean singleShot) {
+        Task(int id, V8Function callback, int period) {
             _id = id;
-            _callback = callback.twin();
-            _timeout = timeout;
-            _singleShot = singleShot;
+            _callback = callback;
+            _period = period;
         }
 
-        private void releaseCallback() {
-            //Log.v(TAG, "Timer task " + _id + " released callback");
+        void release() {
+            if (_callback != null) {
+                _callback.close();
+                _callback = null;
+            }
+        }
+    }
+
+    static final class FrameCallback {
+        final int           _id;
+        V8Function          _callback;
+
+        FrameCallback(int id, V8Function callback) {
+            _id = id;
+            _callback = callback;
+        }
 
+        void release() {
             if (_callback != null) {
                 _callback.close();
                 _callback = null;
             }
         }
+    }
+
+    final ExecutionEnvironment      _env;
+    HandlerThread                   _handlerThread;
+    Handler                         _handler;
+    final SparseArray<Task>         _tasks = new SparseArray<>();
+    final TimerWheel                _wheel = new TimerWheel(SystemClock.uptimeMillis());
+    int                             _nextId = 1;
+    long                            _wakeupTime = Long.MAX_VALUE; //time of posted wakeup, script thread
+    long                            _now;
+    ArrayList<FrameCallback>        _frameCallbacks = new ArrayList<>();
+    ArrayList<FrameCallback>        _runningFrameCallbacks = new ArrayList<>(); //batch being run, swapped with _frameCallbacks
 
+    //timer thread
+    private final Runnable _wakeup = new SafeRunnable() {
         @Override
-        protected void finalize() throws Throwable {
-            //Log.v(TAG, "Timer task " + _id + " finalized");
+        public void doRun() {
             ExecutorService executor = _env.getExecutor();
-            if (executor != null && _callback != null) {
-                executor.execute(new SafeRunnable() {
-                    @Override
-                    public void doRun() {
-                        releaseCallback();
-                    }
-                });
-            } else if (_callback != null)
-                Log.w(TAG, "no executor, callback won't be recycled");
-            super.finalize();
+            if (executor != null && !executor.isShutdown())
+                executor.execute(_tick);
         }
+    };
 
+    //script thread
+    private final SafeRunnable _tick = new SafeRunnable() {
         @Override
         public void doRun() {
-            ExecutorService executor = _env.getExecutor();
-            if (executor == null)
-                return;
-
-            executor.execute(new SafeRunnable() {
-                @Override
-                public void doRun() {
-                    //Log.v(TAG, "Timer task " + _id + " fired");
-                    try {
-                        V8Function func = (V8Function) _callback;
-                        if (func != null)
-                            _env.invokeCallback(func, null, null);
-
-                    } finally {
-                        if (_singleShot)
-                            cancel();
-                    }
-                }
-            });
-
-            Handler handler = _handler;
-            if (!_singleShot) {
-                if (handler != null) {
-                    handler.postDelayed(this, _timeout);
-                } else
-                    Log.i(TAG, "stopping periodic task, null handler");
-            }
+            _wakeupTime = Long.MAX_VALUE;
+            advance(SystemClock.uptimeMillis());
         }
+    };
 
-        public void cancel() {
-            //Log.v(TAG, "Timer task " + _id + " has been cancelled: ");
-            _tasks.remove(_id);
-            releaseCallback();
-        }
+    private final TimerWheel.Callback _onExpired = this::onExpired;
+
+    //next deadline is based on previous one, so interval does not drift, missed ticks are skipped
+    static long nextDeadline(long deadline, int period, long now) {
+        long next = deadline + period;
+        if (next <= now)
+            next = now + period - (now - deadline) % period;
+        return next;
     }
 
+    private void onExpired(TimerWheel.Timer timer) {
+        Task task = (Task)timer;
+        V8Function callback = task._callback;
+        if (task._period > 0)
+            _wheel.schedule(task, nextDeadline(task.deadline, task._period, _now));
+        else
+            _tasks.remove(task._id);
 
+        if (callback != null)
+            _env.invokeVoidCallback(callback, null, null);
 
-    final ExecutionEnvironment      _env;
-    HandlerThread                   _handlerThread;
-    Handler                         _handler;
-    final SparseArray<Task>         _tasks = new SparseArray<>();
-    int                             _nextId = 1;
+        if (task._period == 0)
+            task.release(); //callback could be called only once, it's safe to release it after call
+    }
 
     public Timers(ExecutionEnvironment env) {
         _env = env;
@@ -113,55 +123,163 @@ public final class Timers {
         Log.i(TAG, "registering API functions...");
         V8 v8 = env.getRuntime();
         v8.registerJavaMethod((v8Object, arguments) -> {
-            Handler handler = _handler;
-            if (handler == null) {
-                Log.w(TAG, "skipping setTimeout, timer is dead");
-                return -1;
-            }
-            int timeout = arguments.getInteger(1);
-            int id = _nextId++;
-            Task task = new Task(id, arguments.getObject(0), timeout,true);
-            _tasks.put(id, task);
-            handler.postDelayed(task, timeout);
+            int id = start(arguments.getObject(0), arguments.getInteger(1), false);
             arguments.close();
             return id;
         }, "setTimeout");
         v8.registerJavaMethod((v8Object, arguments) -> {
-            Handler handler = _handler;
-            if (handler == null) {
-                Log.w(TAG, "skipping setInterval, timer is dead");
-                return -1;
-            }
-            int period = arguments.getInteger(1);
-            int id = _nextId++;
-            Task task = new Task(id, arguments.getObject(0), period,false);
-            _tasks.put(id, task);
-            handler.postDelayed(task, period);
+            int id = start(arguments.getObject(0), arguments.getInteger(1), true);
             arguments.close();
             return id;
         }, "setInterval");
         JavaVoidCallback cancel = (v8Object, arguments) -> {
-            int id = arguments.getInteger(0);
-            //callback will leak here, fixme
-            Task task = _tasks.get(id);
-            if (task != null) {
-                task.cancel();
-                _tasks.remove(id);
-            }
+            cancel(arguments.getInteger(0));
+            arguments.close();
         };
         v8.registerJavaMethod(cancel, "clearTimeout");
         v8.registerJavaMethod(cancel, "clearInterval");
+        v8.registerJavaMethod((v8Object, arguments) -> {
+            int id = requestAnimationFrame(arguments.getObject(0));
+            arguments.close();
+            return id;
+        }, "requestAnimationFrame");
+        v8.registerJavaMethod((v8Object, arguments) -> {
+            cancelAnimationFrame(arguments.getInteger(0));
+            arguments.close();
+        }, "cancelAnimationFrame");
+    }
+
+    private int requestAnimationFrame(V8Object callback) {
+        if (!(callback instanceof V8Function)) {
+            Log.w(TAG, "skipping requestAnimationFrame, callback is not a function");
+            if (callback != null)
+                callback.close();
+            return -1;
+        }
+        int id = _nextId++;
+        _frameCallbacks.add(new FrameCallback(id, (V8Function)callback));
+        _env.paint();
+        return id;
+    }
+
+    private static boolean cancel(ArrayList<FrameCallback> callbacks, int id, boolean remove) {
+        for(int i = 0, n = callbacks.size(); i < n; ++i) {
+            FrameCallback callback = callbacks.get(i);
+            if (callback._id == id) {
+                callback.release();
+                if (remove)
+                    callbacks.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cancelAnimationFrame(int id) {
+        //entry of running batch stays in place, released callback is skipped
+        if (!cancel(_frameCallbacks, id, true))
+            cancel(_runningFrameCallbacks, id, false);
+    }
+
+    public boolean hasAnimationFrameCallbacks() {
+        return !_frameCallbacks.isEmpty();
+    }
+
+    //called by frame loop before paint, callbacks requested while running go to the next frame
+    public void runAnimationFrameCallbacks(long frameTime) {
+        if (_frameCallbacks.isEmpty())
+            return;
+
+        ArrayList<FrameCallback> batch = _frameCallbacks;
+        _frameCallbacks = _runningFrameCallbacks;
+        _runningFrameCallbacks = batch;
+
+        ArgumentsPool pool = _env.getArgumentsPool();
+        V8Array args = pool.acquire(1);
+        ArgumentsPool.set(args, 0, (double)frameTime); //SystemClock.uptimeMillis() time base, same for all callbacks of the frame
+        try {
+            for(int i = 0, n = batch.size(); i < n; ++i) {
+                FrameCallback callback = batch.get(i);
+                if (callback._callback != null) {
+                    _env.invokeVoidCallback(callback._callback, null, args);
+                    callback.release();
+                }
+            }
+        } finally {
+            pool.release(args);
+            for(int i = 0, n = batch.size(); i < n; ++i)
+                batch.get(i).release(); //left over if a callback threw
+            batch.clear();
+        }
+    }
+
+    private int start(V8Object callback, int timeout, boolean periodic) {
+        if (_handler == null || !(callback instanceof V8Function)) {
+            Log.w(TAG, "skipping timer, " + (_handler == null? "timer is dead": "callback is not a function"));
+            if (callback != null)
+                callback.close();
+            return -1;
+        }
+        if (timeout < 0)
+            timeout = 0;
+
+        int id = _nextId++;
+        //zero period would spin, browsers clamp it as well
+        Task task = new Task(id, (V8Function)callback, periodic? Math.max(timeout, 1): 0);
+        _tasks.put(id, task);
+        _wheel.schedule(task, SystemClock.uptimeMillis() + timeout);
+        scheduleWakeup();
+        return id;
+    }
+
+    private void cancel(int id) {
+        Task task = _tasks.get(id);
+        if (task == null)
+            return;
+        _tasks.remove(id);
+        _wheel.cancel(task);
+        task.release();
+    }
+
+    //runs all timers due by given time, called from wakeup and from frame loop with frame time
+    public void advance(long now) {
+        _now = now;
+        _wheel.advance(now, _onExpired);
+        scheduleWakeup();
+    }
+
+    private void scheduleWakeup() {
+        Handler handler = _handler;
+        if (handler == null)
+            return;
+
+        long wakeup = _wheel.nextWakeup();
+        if (wakeup >= _wakeupTime)
+            return; //already posted wakeup comes earlier, it will post next one
+
+        handler.removeCallbacks(_wakeup);
+        _wakeupTime = wakeup;
+        if (wakeup != Long.MAX_VALUE)
+            handler.postAtTime(_wakeup, wakeup);
+    }
+
+    public int size() {
+        return _tasks.size();
     }
 
     public void discard() {
         Log.d(TAG, "discard");
-        while(_tasks.size() != 0) {
-            Task task = _tasks.valueAt(0);
-            if (task != null)
-                task.cancel();
-            _tasks.removeAt(0);
+        for(int i = 0; i < _tasks.size(); ++i) {
+            Task task = _tasks.valueAt(i);
+            _wheel.cancel(task);
+            task.release();
         }
         _tasks.clear();
+        for(FrameCallback callback : _frameCallbacks)
+            callback.release();
+        _frameCallbacks.clear();
+        if (_handler != null)
+            _handler.removeCallbacks(_wakeup);
         _handlerThread.quitSafely();
         _handlerThread = null;
         _handler = null;
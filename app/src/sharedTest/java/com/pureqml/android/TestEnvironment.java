@@ -0,0 +1,94 @@
+package com.pureqml.android;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Function;
+import com.eclipsesource.v8.V8Object;
+import com.pureqml.android.runtime.ArgumentsPool;
+import com.pureqml.android.runtime.BaseObject;
+import com.pureqml.android.runtime.CacheEngine;
+import com.pureqml.android.runtime.Element;
+import com.pureqml.android.runtime.ImagePrefetcher;
+
+import java.util.concurrent.ExecutorService;
+
+//execution environment for host and instrumented tests: real object registry, everything else is inert unless test overrides it
+public class TestEnvironment implements IExecutionEnvironment {
+    public final ObjectRegistry     objects = new ObjectRegistry();
+    public Rect                     surfaceGeometry;
+    public long                     frameTime;
+    public V8                       runtime;
+    public ArgumentsPool            argumentsPool;
+    private CacheEngine             _cacheEngine;
+    private ImagePrefetcher         _imagePrefetcher;
+
+    @Override public Context getContext()                   { return null; }
+    @Override public ExecutorService getExecutor()          { return null; }
+    @Override public ExecutorService getThreadPool()        { return null; }
+    @Override public ViewGroup getRootView()                { return null; }
+    @Override public void setRenderer(IRenderer renderer)   { }
+    @Override public IRenderer getRenderer()                { return null; }
+    @Override public DisplayMetrics getDisplayMetrics()     { return null; }
+    @Override public Rect getSurfaceGeometry()              { return surfaceGeometry; }
+
+    @Override public V8 getRuntime()                        { return runtime; }
+    @Override public ArgumentsPool getArgumentsPool()       { return argumentsPool; }
+
+    @Override public int nextObjectId()                     { return objects.allocate(); }
+    @Override public BaseObject getObjectById(int id)       { return objects.get(id); }
+    @Override public void putObject(int id, BaseObject element) { objects.put(id, element); }
+    @Override public void removeObject(int id)              { objects.remove(id); }
+
+    @Override
+    public Object invokeCallback(V8Function callback, V8Object receiver, V8Array arguments) {
+        return callback.call(receiver, arguments);
+    }
+
+    @Override
+    public void invokeVoidCallback(V8Function callback, V8Object receiver, V8Array arguments) {
+        Object r = callback.call(receiver, arguments);
+        if (r instanceof V8Object)
+            ((V8Object)r).close();
+    }
+
+    @Override public void update(Element el)                { }
+
+    @Override
+    public CacheEngine getCacheEngine() {
+        if (_cacheEngine == null)
+            _cacheEngine = new CacheEngine();
+        return _cacheEngine;
+    }
+
+    @Override public long getFrameTime()                    { return frameTime; }
+    @Override public void startAnimation(Element el, float seconds) { }
+    @Override public void stopAnimation(Element el)         { }
+    @Override public void scheduleScroll(Element el)        { }
+    @Override public void getTouchVelocity(PointF velocity) { velocity.set(0, 0); }
+
+    @Override public AssetManager getAssets()               { return null; }
+    @Override public ImageLoader getImageLoader()           { return null; }
+
+    @Override
+    public ImagePrefetcher getImagePrefetcher() {
+        if (_imagePrefetcher == null)
+            _imagePrefetcher = new ImagePrefetcher();
+        return _imagePrefetcher;
+    }
+
+    @Override public void register(IResource res)           { }
+    @Override public void focusView(View view, boolean set) { }
+    @Override public void blockUiInput(boolean block)       { }
+
+    @Override public Typeface getTypeface(String fontFamily, int fontWeight, boolean italic) { return null; }
+    @Override public ComputedStyle getDefaultStyle(String selector) { return null; }
+}
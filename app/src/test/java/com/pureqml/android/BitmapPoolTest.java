@@ -0,0 +1,141 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class BitmapPoolTest {
+    private static final long MaxSize = 1 << 20;
+
+    private final BitmapPool _pool = new BitmapPool(MaxSize);
+
+    private static Bitmap bitmap(int width, int height) {
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    //painted by one element in current frame, released when it paints something else
+    private Bitmap released(int width, int height) {
+        Bitmap bitmap = bitmap(width, height);
+        _pool.retain(bitmap);
+        _pool.release(bitmap);
+        return bitmap;
+    }
+
+    private static long bytes(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @Test
+    public void releasedBitmapIsReusedFromNextFrame() {
+        Bitmap bitmap = released(64, 64);
+        assertNull("display lists of current frame may still draw it", _pool.get(bytes(bitmap)));
+        _pool.beginFrame();
+        assertSame(bitmap, _pool.get(bytes(bitmap)));
+        assertNull(_pool.get(bytes(bitmap)));
+        assertEquals(0, _pool.getSize());
+    }
+
+    @Test
+    public void referencedBitmapIsNotPooled() {
+        Bitmap bitmap = bitmap(64, 64);
+        _pool.retain(bitmap); //memory cache
+        _pool.retain(bitmap); //element
+        _pool.release(bitmap);
+        _pool.beginFrame();
+        assertNull(_pool.get(bytes(bitmap)));
+
+        _pool.release(bitmap);
+        _pool.beginFrame();
+        assertSame(bitmap, _pool.get(bytes(bitmap)));
+    }
+
+    @Test
+    public void bitmapPaintedAgainIsNotPooled() {
+        Bitmap bitmap = released(64, 64);
+        _pool.retain(bitmap); //evicted and loaded back before fence passed
+        _pool.beginFrame();
+        _pool.beginFrame();
+        assertNull(_pool.get(bytes(bitmap)));
+    }
+
+    @Test
+    public void bitmapWaitsForFramesInFlight() {
+        _pool.beginFrame();
+        int fence = _pool.queueFrame(); //frame recorded with bitmap goes to render thread
+        Bitmap bitmap = released(64, 64);
+
+        //script thread is ahead of render thread
+        _pool.beginFrame();
+        _pool.beginFrame();
+        _pool.beginFrame();
+        assertNull(_pool.get(bytes(bitmap)));
+
+        _pool.frameRendered(fence);
+        assertSame(bitmap, _pool.get(bytes(bitmap)));
+    }
+
+    @Test
+    public void framesRecordedAfterReleaseDoNotDelayReuse() {
+        _pool.beginFrame();
+        int first = _pool.queueFrame();
+        Bitmap bitmap = released(64, 64);
+        _pool.beginFrame();
+        int second = _pool.queueFrame();
+
+        _pool.frameRendered(first);
+        assertSame("second frame doesn't draw it", bitmap, _pool.get(bytes(bitmap)));
+        _pool.frameRendered(second);
+    }
+
+    @Test
+    public void bitmapReleasedAfterQueuedFrameWaitsForIt() {
+        _pool.beginFrame();
+        Bitmap bitmap = released(64, 64);
+        int fence = _pool.queueFrame(); //recorded after release in the same frame
+        _pool.beginFrame();
+        assertNull(_pool.get(bytes(bitmap)));
+        _pool.frameRendered(fence);
+        assertSame(bitmap, _pool.get(bytes(bitmap)));
+    }
+
+    @Test
+    public void immutableBitmapIsNotPooled() {
+        Bitmap bitmap = bitmap(64, 64).copy(Bitmap.Config.ARGB_8888, false);
+        _pool.retain(bitmap);
+        _pool.release(bitmap);
+        _pool.beginFrame();
+        assertNull(_pool.get(bytes(bitmap)));
+    }
+
+    @Test
+    public void allocationIsAtMostTwiceTheRequestedSize() {
+        Bitmap bitmap = released(100, 100);
+        _pool.beginFrame();
+        long size = bytes(bitmap);
+        assertNull("too large for request", _pool.get(size / 3));
+        assertNull("too small for request", _pool.get(size + 1));
+        assertSame(bitmap, _pool.get(size / 2 + 1));
+        assertEquals(1, _pool.getHits());
+        assertEquals(2, _pool.getMisses());
+    }
+
+    @Test
+    public void poolSizeIsBounded() {
+        Bitmap[] bitmaps = new Bitmap[5];
+        for(int i = 0; i < bitmaps.length; ++i)
+            bitmaps[i] = released(256, 256); //256K each, one of them does not fit
+        _pool.beginFrame();
+        assertEquals(MaxSize, _pool.getSize());
+
+        _pool.clear();
+        assertEquals(0, _pool.getSize());
+        assertNull(_pool.get(bytes(bitmaps[0])));
+    }
+}
@@ -0,0 +1,213 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageDiskCacheTest {
+    private static final long MaxSize = 1024;
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    private File dir() {
+        return new File(_folder.getRoot(), "images");
+    }
+
+    //new instance over the same directory, as after process restart
+    private ImageDiskCache open(long maxSize) {
+        return new ImageDiskCache(dir(), maxSize);
+    }
+
+    private void write(String name, String content) throws IOException {
+        File dir = dir();
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+        FileOutputStream out = new FileOutputStream(new File(dir, name));
+        try {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<String> journal() throws IOException {
+        return Files.readAllLines(new File(dir(), "journal").toPath(), StandardCharsets.UTF_8);
+    }
+
+    private boolean exists(String name) {
+        return new File(dir(), name).exists();
+    }
+
+    @Test
+    public void entriesAreReplayedFromJournal() {
+        ImageDiskCache cache = open(MaxSize);
+        cache.put("a", new byte[10], "\"tag 1\"", null, 100);
+        cache.put("b", new byte[20], null, "Mon, 01 Jan 2024 00:00:00 GMT", 200);
+        cache.put("c", new byte[30], null, null, 300);
+        cache.put("a", new byte[15], "\"tag 2\"", null, 400);
+        cache.touch("b", 500);
+        cache.remove("c");
+        cache.flush();
+
+        cache = open(MaxSize);
+        ImageDiskCache.Entry a = cache.get("a");
+        assertNotNull(a);
+        assertEquals(15, a.size);
+        assertEquals("\"tag 2\"", a.etag);
+        assertNull(a.lastModified);
+        assertEquals(400, a.expires);
+
+        ImageDiskCache.Entry b = cache.get("b");
+        assertNotNull(b);
+        assertEquals(20, b.size);
+        assertNull(b.etag);
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", b.lastModified);
+        assertEquals(500, b.expires);
+
+        assertNull(cache.get("c"));
+        assertFalse(exists("c"));
+        assertEquals(35, cache.getSize());
+    }
+
+    @Test
+    public void truncatedLastLineIsIgnored() throws IOException {
+        write("a", "aaaa");
+        write("b", "bbbbbb");
+        write("journal", "1\nPUT a 4 - - 100\nPUT b 6 - -");
+
+        ImageDiskCache cache = open(MaxSize);
+        ImageDiskCache.Entry a = cache.get("a");
+        assertNotNull(a);
+        assertEquals(4, a.size);
+        assertEquals(100, a.expires);
+        assertNull(cache.get("b"));
+        assertFalse("file of partial record is a leftover", exists("b"));
+        assertEquals(4, cache.getSize());
+    }
+
+    @Test
+    public void recordCutBeforeKeyIsIgnored() throws IOException {
+        write("a", "aaaa");
+        write("journal", "1\nPUT a 4 - - 100\nDEL a\nPU");
+
+        ImageDiskCache cache = open(MaxSize);
+        assertNull(cache.get("a"));
+        assertFalse(exists("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void filesNotInJournalAreDeleted() throws IOException {
+        write("a", "aaaa");
+        write("a.17.tmp", "aa");
+        write("stray", "ss");
+        write("journal.tmp", "1\n");
+        write("journal", "1\nPUT a 4 - - 100\n");
+
+        ImageDiskCache cache = open(MaxSize);
+        assertNotNull(cache.get("a"));
+        assertTrue(exists("a"));
+        assertFalse(exists("a.17.tmp"));
+        assertFalse(exists("stray"));
+        assertFalse(exists("journal.tmp"));
+    }
+
+    @Test
+    public void unsupportedJournalClearsCache() throws IOException {
+        write("a", "aaaa");
+        write("journal", "0\nPUT a 4 - - 100\n");
+
+        ImageDiskCache cache = open(MaxSize);
+        assertNull(cache.get("a"));
+        assertFalse(exists("a"));
+        assertEquals(Arrays.asList("1"), journal());
+    }
+
+    @Test
+    public void journalIsCompactedOnLoad() throws IOException {
+        ImageDiskCache cache = open(MaxSize);
+        cache.put("a", new byte[1], null, null, 1);
+        cache.put("b", new byte[2], null, null, 2);
+        cache.put("a", new byte[3], null, null, 3);
+        cache.remove("b");
+        cache.get("a");
+        cache.flush();
+        assertEquals(6, journal().size());
+
+        open(MaxSize).get("a");
+        assertEquals(Arrays.asList("1", "PUT a 3 - - 3"), journal());
+    }
+
+    @Test
+    public void journalIsCompactedAfterManyRedundantRecords() throws IOException {
+        ImageDiskCache cache = open(MaxSize);
+        cache.put("a", new byte[1], null, null, 0);
+        for(int i = 1; i <= 2000; ++i)
+            cache.touch("a", i);
+        assertEquals(2002, journal().size());
+
+        cache.put("b", new byte[1], null, null, 0);
+        assertEquals(Arrays.asList("1", "PUT a 1 - - 2000", "PUT b 1 - - 0"), journal());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreTrimmed() throws IOException {
+        ImageDiskCache cache = open(10);
+        cache.put("a", new byte[4], null, null, 0);
+        cache.put("b", new byte[4], null, null, 0);
+        cache.get("a");
+        cache.put("c", new byte[4], null, null, 0);
+        assertNull(cache.get("b"));
+        assertFalse(exists("b"));
+        assertEquals(8, cache.getSize());
+        cache.flush();
+
+        //access order survives restart, a was read before c was stored
+        cache = open(10);
+        cache.put("d", new byte[4], null, null, 0);
+        assertNull(cache.get("a"));
+        assertFalse(exists("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void smallerLimitIsAppliedOnLoad() {
+        ImageDiskCache cache = open(MaxSize);
+        cache.put("a", new byte[4], null, null, 0);
+        cache.put("b", new byte[4], null, null, 0);
+        cache.flush();
+
+        cache = open(6);
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertArrayEquals(new byte[4], readFile("b"));
+    }
+
+    private byte[] readFile(String name) {
+        try {
+            return Files.readAllBytes(new File(dir(), name).toPath());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
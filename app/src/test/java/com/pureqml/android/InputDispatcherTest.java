@@ -0,0 +1,212 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class InputDispatcherTest {
+    private static final String Left = "Left";
+    private static final String VolumeUp = "VolumeUp";
+
+    //script side: answers from results, records keys it saw, may be held to simulate long frame
+    private final class ScriptTarget implements InputDispatcher.Target {
+        final ExecutorService       executor = Executors.newSingleThreadExecutor();
+        final Map<String, Boolean>  results = new HashMap<>();
+        final List<String>          keys = Collections.synchronizedList(new ArrayList<>());
+        volatile CountDownLatch     hold;
+
+        @Override public ExecutorService getExecutor()  { return executor; }
+        @Override public IRenderer getRenderer()        { return _renderer; }
+
+        @Override
+        public boolean processTouchEvent(int eventId, MotionEvent event) { return true; }
+
+        @Override
+        public boolean processKeyEvent(String keyName, KeyEvent event) {
+            CountDownLatch latch = hold;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            keys.add(keyName);
+            Boolean result = results.get(keyName);
+            return result != null && result;
+        }
+    }
+
+    //UI side: records events returned to the system
+    private static final class SystemRenderer implements IRenderer {
+        final List<KeyEvent>    systemKeys = new ArrayList<>();
+        boolean                 closed;
+
+        @Override public DisplayMetrics getDisplayMetrics()         { return null; }
+        @Override public void invalidateRect(Rect rect)             { }
+        @Override public void keepScreenOn(boolean enable)          { }
+        @Override public void setFullScreen(boolean enable)         { }
+        @Override public void lockOrientation(String orientation)   { }
+        @Override public void closeApp()                            { closed = true; }
+        @Override public void dispatchKeyToSystem(KeyEvent event)   { systemKeys.add(event); }
+        @Override public String getIntentParam(String text)         { return null; }
+    }
+
+    private final LinkedBlockingQueue<Runnable> _uiTasks = new LinkedBlockingQueue<>();
+    private ScriptTarget                        _script;
+    private SystemRenderer                      _renderer;
+    private InputDispatcher                     _dispatcher;
+
+    @Before
+    public void setUp() {
+        _script = new ScriptTarget();
+        _renderer = new SystemRenderer();
+        _dispatcher = new InputDispatcher(_script, _uiTasks::add);
+    }
+
+    @After
+    public void tearDown() {
+        CountDownLatch hold = _script.hold;
+        if (hold != null)
+            hold.countDown();
+        _script.executor.shutdownNow();
+    }
+
+    //waits until script thread processed everything queued, then runs what it posted to UI thread
+    private void sync() throws Exception {
+        _script.executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        Runnable task;
+        while((task = _uiTasks.poll()) != null)
+            task.run();
+    }
+
+    private static KeyEvent key(int action, int keyCode, int repeat, long eventTime) {
+        return new KeyEvent(eventTime, eventTime, action, keyCode, repeat);
+    }
+
+    private static KeyEvent down(int keyCode)   { return key(KeyEvent.ACTION_DOWN, keyCode, 0, SystemClock.uptimeMillis()); }
+    private static KeyEvent up(int keyCode)     { return key(KeyEvent.ACTION_UP, keyCode, 0, SystemClock.uptimeMillis()); }
+
+    private void assertSystemKeys(int ... actions) {
+        assertEquals(actions.length, _renderer.systemKeys.size());
+        for(int i = 0; i < actions.length; ++i)
+            assertEquals(actions[i], _renderer.systemKeys.get(i).getAction());
+    }
+
+    @Test
+    public void keyDownDoesNotWaitForScript() throws Exception {
+        _script.hold = new CountDownLatch(1);
+        _script.results.put(Left, true);
+
+        long start = System.nanoTime();
+        for(int i = 0; i < 10; ++i) {
+            assertTrue(_dispatcher.dispatchKeyDown(Left, down(KeyEvent.KEYCODE_DPAD_LEFT)));
+            assertTrue(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_DPAD_LEFT)));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("UI thread blocked for " + elapsedMillis + "ms", elapsedMillis < 100);
+        assertTrue(_script.keys.isEmpty());
+
+        _script.hold.countDown();
+        sync();
+        assertEquals(10, _script.keys.size());
+        assertSystemKeys();
+    }
+
+    @Test
+    public void keyLatencyIsMeasuredFromEventTime() throws Exception {
+        _script.results.put(Left, true);
+        long eventTime = SystemClock.uptimeMillis() - 40;
+        _dispatcher.dispatchKeyDown(Left, key(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_DPAD_LEFT, 0, eventTime));
+        sync();
+
+        LatencyHistogram latency = _dispatcher.getKeyLatency();
+        assertEquals(1, latency.getCount());
+        assertTrue("max " + latency.getMax(), latency.getMax() >= 40);
+    }
+
+    @Test
+    public void handledKeyIsNotReturnedToSystem() throws Exception {
+        _script.results.put(Left, true);
+        assertTrue(_dispatcher.dispatchKeyDown(Left, down(KeyEvent.KEYCODE_DPAD_LEFT)));
+        assertTrue(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_DPAD_LEFT)));
+        sync();
+        assertEquals(Collections.singletonList(Left), _script.keys);
+        assertSystemKeys();
+    }
+
+    @Test
+    public void unhandledKeyIsReturnedToSystemOnce() throws Exception {
+        _script.hold = new CountDownLatch(1);
+        assertTrue(_dispatcher.dispatchKeyDown(VolumeUp, down(KeyEvent.KEYCODE_VOLUME_UP)));
+        assertTrue("up waits for its down", _dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_VOLUME_UP)));
+        _script.hold.countDown();
+        sync();
+
+        assertEquals(Collections.singletonList(VolumeUp), _script.keys);
+        assertSystemKeys(KeyEvent.ACTION_DOWN, KeyEvent.ACTION_UP);
+    }
+
+    @Test
+    public void upOfReturnedPressGoesToSystemDirectly() throws Exception {
+        assertTrue(_dispatcher.dispatchKeyDown(VolumeUp, down(KeyEvent.KEYCODE_VOLUME_UP)));
+        sync();
+        assertSystemKeys(KeyEvent.ACTION_DOWN);
+
+        assertFalse(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_VOLUME_UP)));
+        sync();
+        assertSystemKeys(KeyEvent.ACTION_DOWN);
+    }
+
+    @Test
+    public void repeatsOfReturnedPressSkipScript() throws Exception {
+        assertTrue(_dispatcher.dispatchKeyDown(VolumeUp, down(KeyEvent.KEYCODE_VOLUME_UP)));
+        sync();
+        long now = SystemClock.uptimeMillis();
+        assertFalse(_dispatcher.dispatchKeyDown(VolumeUp, key(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_VOLUME_UP, 1, now)));
+        assertFalse(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_VOLUME_UP)));
+        sync();
+        assertEquals(Collections.singletonList(VolumeUp), _script.keys);
+
+        //next press asks script again
+        _script.results.put(VolumeUp, true);
+        assertTrue(_dispatcher.dispatchKeyDown(VolumeUp, down(KeyEvent.KEYCODE_VOLUME_UP)));
+        assertTrue(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_VOLUME_UP)));
+        sync();
+        assertEquals(2, _script.keys.size());
+        assertSystemKeys(KeyEvent.ACTION_DOWN);
+    }
+
+    @Test
+    public void unhandledBackClosesApp() throws Exception {
+        assertTrue(_dispatcher.dispatchKeyDown(InputDispatcher.BackKey, down(KeyEvent.KEYCODE_BACK)));
+        assertTrue(_dispatcher.dispatchKeyUp(up(KeyEvent.KEYCODE_BACK)));
+        sync();
+        assertTrue(_renderer.closed);
+        assertSystemKeys();
+    }
+}
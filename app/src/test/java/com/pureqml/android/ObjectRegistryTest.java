@@ -0,0 +1,138 @@
+package com.pureqml.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.pureqml.android.runtime.BaseObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+public class ObjectRegistryTest {
+    private static final int IndexMask = (1 << 20) - 1;
+    private static final int Generations = 1 << 11;
+
+    private IExecutionEnvironment _env;
+    private ObjectRegistry _registry;
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _registry = new ObjectRegistry();
+    }
+
+    private int add(BaseObject object) {
+        int id = _registry.allocate();
+        _registry.put(id, object);
+        return id;
+    }
+
+    @Test
+    public void idsArePositiveAndUnique() {
+        HashSet<Integer> ids = new HashSet<>();
+        for(int i = 0; i < 5000; ++i) {
+            int id = _registry.allocate();
+            assertTrue(id > 0);
+            assertTrue(ids.add(id));
+        }
+        assertEquals(5000, _registry.slotsUsed());
+    }
+
+    @Test
+    public void getReturnsPutObject() {
+        BaseObject a = new BaseObject(_env), b = new BaseObject(_env);
+        int idA = add(a), idB = add(b);
+        assertSame(a, _registry.get(idA));
+        assertSame(b, _registry.get(idB));
+        assertNull(_registry.get(0));
+        assertNull(_registry.get(idB + 1)); //never allocated
+    }
+
+    @Test
+    public void removedSlotIsReusedWithNewGeneration() {
+        BaseObject a = new BaseObject(_env), b = new BaseObject(_env);
+        int idA = add(a);
+        _registry.remove(idA);
+        int idB = add(b);
+
+        assertEquals(idA & IndexMask, idB & IndexMask);
+        assertNotEquals(idA, idB);
+        assertSame(b, _registry.get(idB));
+        assertEquals(1, _registry.slotsUsed());
+    }
+
+    @Test
+    public void staleIdIsRejected() {
+        BaseObject a = new BaseObject(_env), b = new BaseObject(_env);
+        int stale = add(a);
+        _registry.remove(stale);
+        int id = add(b);
+
+        assertNull(_registry.get(stale));
+        _registry.remove(stale); //no-op, must not free slot of b
+        assertSame(b, _registry.get(id));
+        assertEquals(1, _registry.size());
+        try {
+            _registry.put(stale, a);
+            fail("stale id accepted by put");
+        } catch (RuntimeException expected) {
+            assertSame(b, _registry.get(id));
+        }
+    }
+
+    @Test
+    public void generationWrapsAround() {
+        int first = _registry.allocate();
+        HashSet<Integer> ids = new HashSet<>();
+        int id = first;
+        for(int i = 0; i < Generations; ++i) {
+            assertTrue("id must stay positive, got " + id, id > 0);
+            assertEquals(first & IndexMask, id & IndexMask);
+            assertTrue(ids.add(id));
+            _registry.remove(id);
+            id = _registry.allocate();
+        }
+        //11 bit generation counter came back to the first id of the slot
+        assertEquals(first, id);
+        assertEquals(Generations, ids.size());
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        BaseObject[] objects = new BaseObject[5000];
+        int[] ids = new int[objects.length];
+        for(int i = 0; i < objects.length; ++i) {
+            objects[i] = new BaseObject(_env);
+            ids[i] = add(objects[i]);
+        }
+        assertTrue(_registry.capacity() >= objects.length);
+        for(int i = 0; i < objects.length; ++i)
+            assertSame(objects[i], _registry.get(ids[i]));
+        assertEquals(objects.length, _registry.values().size());
+    }
+
+    @Test
+    public void statsFollowLiveObjects() {
+        int a = add(new BaseObject(_env));
+        int b = add(new BaseObject(_env));
+        add(new BaseObject(_env));
+        _registry.remove(a);
+        _registry.remove(b);
+
+        assertEquals(1, _registry.size());
+        assertEquals(3, _registry.peakSize());
+        assertEquals(1.0f / 3, _registry.occupancy(), 1e-6f);
+
+        _registry.clear();
+        assertEquals(0, _registry.size());
+        assertEquals(0, _registry.peakSize());
+        assertEquals(0, _registry.slotsUsed());
+        assertEquals(0, _registry.occupancy(), 0);
+    }
+}
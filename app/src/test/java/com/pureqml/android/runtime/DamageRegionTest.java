@@ -0,0 +1,157 @@
+package com.pureqml.android.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DamageRegionTest {
+    private static void assertDisjoint(DamageRegion region) {
+        for(int i = 0; i < region.size(); ++i)
+            for(int j = i + 1; j < region.size(); ++j)
+                assertFalse(region.toString(), Rect.intersects(region.get(i), region.get(j)));
+    }
+
+    private static void assertCovers(DamageRegion region, Rect rect) {
+        for(int i = 0; i < region.size(); ++i) {
+            if (region.get(i).contains(rect))
+                return;
+        }
+        throw new AssertionError(rect.toShortString() + " is not covered by " + region);
+    }
+
+    @Test
+    public void emptyRectsAreIgnored() {
+        DamageRegion region = new DamageRegion();
+        region.add(new Rect());
+        region.add(10, 10, 10, 20);
+        region.add((Rect)null);
+        assertTrue(region.isEmpty());
+        assertEquals(0, region.getArea());
+    }
+
+    @Test
+    public void distantRectsStaySplit() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(100, 0, 110, 10);
+        region.add(0, 100, 10, 110);
+        assertEquals(3, region.size());
+        assertEquals(300, region.getArea());
+        assertEquals(new Rect(0, 0, 110, 110), region.getBounds());
+        assertDisjoint(region);
+    }
+
+    @Test
+    public void touchingRectsStaySplit() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(10, 0, 20, 10);
+        assertEquals(2, region.size());
+        assertEquals(200, region.getArea());
+    }
+
+    @Test
+    public void overlappingRectsMerge() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(5, 5, 15, 15);
+        assertEquals(1, region.size());
+        assertEquals(new Rect(0, 0, 15, 15), region.get(0));
+        assertEquals(225, region.getArea());
+    }
+
+    @Test
+    public void containedRectIsAbsorbed() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 100, 100);
+        region.add(10, 10, 20, 20);
+        assertEquals(1, region.size());
+        assertEquals(new Rect(0, 0, 100, 100), region.get(0));
+    }
+
+    @Test
+    public void mergeCascades() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(20, 0, 30, 10);
+        region.add(40, 0, 50, 10);
+        assertEquals(3, region.size());
+        //bridges first two, their union then overlaps the third
+        region.add(5, 0, 45, 10);
+        assertEquals(1, region.size());
+        assertEquals(new Rect(0, 0, 50, 10), region.get(0));
+        assertEquals(500, region.getArea());
+    }
+
+    @Test
+    public void fullRegionMergesIntoLeastGrowingRect() {
+        DamageRegion region = new DamageRegion(2);
+        region.add(0, 0, 10, 10);
+        region.add(1000, 1000, 1010, 1010);
+        region.add(20, 0, 30, 10);
+        assertEquals(2, region.size());
+        assertDisjoint(region);
+        assertCovers(region, new Rect(0, 0, 30, 10));
+        assertCovers(region, new Rect(1000, 1000, 1010, 1010));
+        assertEquals(300 + 100, region.getArea());
+    }
+
+    @Test
+    public void fullRegionMergeAbsorbsNewlyIntersectingRects() {
+        DamageRegion region = new DamageRegion(3);
+        region.add(0, 0, 10, 10);
+        region.add(12, 6, 18, 40);
+        region.add(1000, 1000, 1010, 1010);
+        //grows first rect to 0,0-30,10 which now overlaps the second
+        region.add(20, 0, 30, 5);
+        assertDisjoint(region);
+        assertEquals(2, region.size());
+        assertCovers(region, new Rect(0, 0, 30, 40));
+        assertEquals(1200 + 100, region.getArea());
+    }
+
+    @Test
+    public void areaOfManyRectsIsExact() {
+        DamageRegion region = new DamageRegion();
+        long expected = 0;
+        for(int i = 0; i < DamageRegion.DefaultMaxRects; ++i) {
+            region.add(i * 100, 0, i * 100 + 10 + i, 20);
+            expected += (10 + i) * 20;
+        }
+        assertEquals(DamageRegion.DefaultMaxRects, region.size());
+        assertEquals(expected, region.getArea());
+    }
+
+    @Test
+    public void addRegion() {
+        DamageRegion a = new DamageRegion(), b = new DamageRegion();
+        a.add(0, 0, 10, 10);
+        b.add(5, 5, 15, 15);
+        b.add(100, 100, 110, 110);
+        a.add(b);
+        assertEquals(2, a.size());
+        assertEquals(225 + 100, a.getArea());
+        assertTrue(a.intersects(105, 105, 106, 106));
+        assertFalse(a.intersects(50, 50, 60, 60));
+    }
+
+    @Test
+    public void clearAndSet() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(100, 0, 110, 10);
+        region.set(new Rect(5, 5, 6, 6));
+        assertEquals(1, region.size());
+        assertEquals(new Rect(5, 5, 6, 6), region.getBounds());
+        region.clear();
+        assertTrue(region.isEmpty());
+        assertTrue(region.getBounds().isEmpty());
+    }
+}
@@ -0,0 +1,243 @@
+package com.pureqml.android.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.view.MotionEvent;
+
+import com.pureqml.android.TestEnvironment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+@RunWith(RobolectricTestRunner.class)
+public class HitTestTest {
+    //counts touch events reaching element, remembers the deepest element which took touch down
+    private final class Probe extends Element {
+        int visits;
+
+        Probe(TestEnvironment env, int left, int top, int width, int height) {
+            super(env);
+            setStyle("left", left);
+            setStyle("top", top);
+            setStyle("width", width);
+            setStyle("height", height);
+            setStyle("-pure-recursive-visibility", true);
+        }
+
+        @Override
+        public boolean sendEvent(int eventId, int x, int y, MotionEvent event) {
+            ++visits;
+            boolean handled = super.sendEvent(eventId, x, y, event);
+            if (handled && _hit == null)
+                _hit = this;
+            return handled;
+        }
+    }
+
+    private TestEnvironment _env;
+    private Probe           _root;
+    private Probe           _hit;
+    private int             _eventId;
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _root = probe(0, 0, 1920, 1080);
+    }
+
+    @After
+    public void tearDown() {
+        _root.discard();
+    }
+
+    private Probe probe(int left, int top, int width, int height) {
+        return new Probe(_env, left, top, width, height);
+    }
+
+    private static Probe clickable(Probe probe) {
+        probe.on("click", null); //click listener makes element take touch down, nothing is emitted before up
+        return probe;
+    }
+
+    //element which took touch down at x, y, null if nothing did
+    private Probe touch(int x, int y) {
+        _hit = null;
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        try {
+            _root.sendEvent(++_eventId, x, y, down);
+        } finally {
+            down.recycle();
+        }
+        return _hit;
+    }
+
+    private ArrayList<Element> row(int count, int size) {
+        ArrayList<Element> children = new ArrayList<>();
+        for(int i = 0; i < count; ++i)
+            children.add(clickable(probe(i * size, 0, size, size)));
+        return children;
+    }
+
+    @Test
+    public void gridListsOverlappingChildrenInZOrder() {
+        ArrayList<Element> children = new ArrayList<>();
+        children.add(clickable(probe(0, 0, 100, 100)));
+        children.add(clickable(probe(50, 50, 100, 100)));
+        children.add(clickable(probe(300, 300, 10, 10)));
+        children.add(probe(0, 0, 1000, 1000)); //no listeners, no hit bounds
+        HitGrid grid = new HitGrid();
+        grid.build(children);
+
+        assertArrayEquals(new int[] { 0, 1 }, grid.query(75, 75));
+        assertArrayEquals(new int[] { 2 }, grid.query(305, 305));
+        assertEquals(0, grid.query(500, 500).length);
+        assertEquals(0, grid.query(-1, 0).length);
+    }
+
+    @Test
+    public void gridOfChildrenWithoutTargetsIsEmpty() {
+        ArrayList<Element> children = new ArrayList<>();
+        children.add(probe(0, 0, 100, 100));
+        HitGrid grid = new HitGrid();
+        grid.build(children);
+        assertEquals(0, grid.query(50, 50).length);
+    }
+
+    @Test
+    public void gridCoversEveryChildOfUniformRow() {
+        ArrayList<Element> children = row(100, 10);
+        HitGrid grid = new HitGrid();
+        grid.build(children);
+        for(int i = 0; i < children.size(); ++i) {
+            int[] candidates = grid.query(i * 10 + 5, 5);
+            boolean found = false;
+            for(int candidate : candidates)
+                found |= candidate == i;
+            assertTrue("child " + i, found);
+        }
+    }
+
+    @Test
+    public void topmostChildTakesTouch() {
+        Probe below = clickable(probe(0, 0, 100, 100));
+        Probe above = clickable(probe(50, 50, 100, 100));
+        _root.append(below);
+        _root.append(above);
+        assertSame(above, touch(75, 75));
+        assertSame(below, touch(25, 25));
+        assertNull(touch(500, 500));
+    }
+
+    @Test
+    public void subtreesWithoutTargetsAreNotVisited() {
+        Probe panel = probe(0, 0, 500, 500);
+        Probe label = probe(0, 0, 100, 100);
+        panel.append(label);
+        _root.append(panel);
+        Probe button = clickable(probe(0, 0, 100, 100));
+        _root.append(button);
+        _root.append(probe(0, 0, 100, 100)); //on top, but takes nothing
+
+        assertSame(button, touch(50, 50));
+        assertEquals(0, panel.visits);
+        assertEquals(0, label.visits);
+    }
+
+    @Test
+    public void childOutsideParentRectTakesTouch() {
+        Probe panel = probe(0, 0, 100, 100);
+        Probe button = clickable(probe(200, 200, 50, 50));
+        panel.append(button);
+        _root.append(panel);
+        assertSame(button, touch(225, 225));
+    }
+
+    @Test
+    public void largeContainerRoutesThroughGrid() {
+        Probe list = probe(0, 0, 1920, 1080);
+        ArrayList<Element> children = row(200, 20);
+        for(Element child : children)
+            list.append(child);
+        _root.append(list);
+
+        assertSame(children.get(50), touch(1005, 5));
+        for(int i = 0; i < children.size(); ++i) {
+            Probe child = (Probe)children.get(i);
+            assertEquals("child " + i, i == 50? 1: 0, child.visits);
+        }
+        assertNull(touch(5, 500));
+    }
+
+    @Test
+    public void gridFollowsMovedChild() {
+        Probe list = probe(0, 0, 1920, 1080);
+        ArrayList<Element> children = row(100, 10);
+        for(Element child : children)
+            list.append(child);
+        _root.append(list);
+        Probe moved = (Probe)children.get(10);
+        assertSame(moved, touch(105, 5));
+
+        moved.setStyle("top", 500);
+        assertFalse(moved == touch(105, 5));
+        assertSame(moved, touch(105, 505));
+    }
+
+    //ancestors cached hit bounds while panel had no targets and was skipped
+    @Test
+    public void buttonAppendedUnderPanelWithoutTargetsTakesTouch() {
+        Probe panel = probe(0, 0, 500, 500);
+        Probe content = probe(0, 0, 500, 500);
+        panel.append(content);
+        Probe screen = probe(0, 0, 1920, 1080);
+        screen.append(panel);
+        screen.append(clickable(probe(1000, 0, 100, 100)));
+        _root.append(screen);
+        assertNull(touch(50, 50));
+
+        Probe button = clickable(probe(0, 0, 100, 100));
+        content.append(button);
+        assertSame(button, touch(50, 50));
+    }
+
+    @Test
+    public void listenerAddedUnderPanelWithoutTargetsTakesTouch() {
+        Probe panel = probe(0, 0, 500, 500);
+        Probe button = probe(0, 0, 100, 100);
+        panel.append(button);
+        Probe screen = probe(0, 0, 1920, 1080);
+        screen.append(panel);
+        screen.append(clickable(probe(1000, 0, 100, 100)));
+        _root.append(screen);
+        assertNull(touch(50, 50));
+
+        clickable(button);
+        assertSame(button, touch(50, 50));
+    }
+
+    @Test
+    public void buttonAppendedUnderGridChildWithoutTargetsTakesTouch() {
+        Probe list = probe(0, 0, 1920, 1080);
+        ArrayList<Element> children = row(100, 10);
+        Probe panel = probe(0, 500, 100, 100);
+        children.add(panel);
+        for(Element child : children)
+            list.append(child);
+        _root.append(list);
+        assertNull(touch(50, 550));
+
+        Probe button = clickable(probe(0, 0, 100, 100));
+        panel.append(button);
+        assertSame(button, touch(50, 550));
+    }
+}
@@ -0,0 +1,119 @@
+package com.pureqml.android.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.pureqml.android.TestEnvironment;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+
+//steady state paint traversal must not allocate, garbage per frame turns into gc pauses while scrolling
+@RunWith(RobolectricTestRunner.class)
+public class PaintAllocationTest {
+    private static final int Containers = 40;
+    private static final int ItemsPerContainer = 50;
+    private static final int Frames = 100;
+
+    //draws nothing, counts canvas saves, so traversal is measured without rasterization
+    private static final class NullCanvas extends Canvas {
+        int saves;
+
+        @Override public int save()                                 { return ++saves; }
+        @Override public void restore()                             { }
+        @Override public void restoreToCount(int saveCount)         { }
+        @Override public void translate(float dx, float dy)         { }
+        @Override public void concat(Matrix matrix)                 { }
+        @Override public boolean clipRect(Rect rect)                { return true; }
+        @Override public boolean clipPath(Path path)                { return true; }
+        @Override public void drawRect(Rect r, Paint paint)         { }
+        @Override public void drawRect(RectF rect, Paint paint)     { }
+        @Override public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) { }
+        @Override public boolean isHardwareAccelerated()            { return false; }
+    }
+
+    private TestEnvironment _env;
+    private Element         _root;
+    private NullCanvas      _canvas;
+
+    private static void setRect(Element el, int left, int top, int width, int height) {
+        el.setStyle("left", left);
+        el.setStyle("top", top);
+        el.setStyle("width", width);
+        el.setStyle("height", height);
+    }
+
+    @Before
+    public void setUp() {
+        _env = new TestEnvironment();
+        _env.getCacheEngine().setBudget(0); //display lists are recorded once and then replayed, traversal is what's measured
+        _canvas = new NullCanvas();
+
+        _root = new Element(_env);
+        setRect(_root, 0, 0, 1920, 1080);
+        for(int c = 0; c < Containers; ++c) {
+            Element container = new Element(_env);
+            setRect(container, 0, c * 100, 1920, 100);
+            container.setStyle("overflow", "hidden");
+            if (c % 2 == 0)
+                container.setStyle("opacity", 0.5f); //alpha patched paints
+            for(int i = 0; i < ItemsPerContainer; ++i) {
+                Rectangle item = new Rectangle(_env);
+                setRect(item, i * 40, 0, 36, 90);
+                item.setStyle("background-color", "#336699");
+                if (i % 3 == 0)
+                    item.setStyle("border-radius", 4);
+                if (i % 5 == 0) {
+                    item.setStyle("border-color", "#ffffff");
+                    item.setStyle("border-width", 2);
+                }
+                container.append(item);
+            }
+            _root.append(container);
+        }
+    }
+
+    private void paintFrame(Rect cullRect) {
+        PaintState state = PaintState.obtain(_canvas, cullRect);
+        _root.paint(state);
+        state.recycle();
+    }
+
+    private long measure(Rect cullRect, int paintedContainers) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for(int i = 0; i < Frames; ++i) //warm-up, pools and scratch objects are filled here
+            paintFrame(cullRect);
+
+        _canvas.saves = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < Frames; ++i)
+            paintFrame(cullRect);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals("painted containers", paintedContainers * Frames, _canvas.saves);
+        return allocated;
+    }
+
+    @Test
+    public void fullRepaintDoesNotAllocate() {
+        long allocated = measure(null, Containers);
+        assertTrue("allocated " + allocated + " bytes in " + Frames + " frames", allocated < Frames);
+    }
+
+    @Test
+    public void culledRepaintDoesNotAllocate() {
+        long allocated = measure(new Rect(0, 0, 1920, 1080), 11); //rows below the screen are skipped
+        assertTrue("allocated " + allocated + " bytes in " + Frames + " frames", allocated < Frames);
+    }
+}
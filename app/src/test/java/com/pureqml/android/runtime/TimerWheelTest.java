@@ -0,0 +1,206 @@
+package com.pureqml.android.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TimerWheelTest {
+    private static final class Probe extends TimerWheel.Timer {
+        final String name;
+
+        Probe(String name) {
+            this.name = name;
+        }
+    }
+
+    private final List<String> _expired = new ArrayList<>();
+    private final TimerWheel.Callback _record = timer -> _expired.add(((Probe)timer).name);
+
+    private static Probe schedule(TimerWheel wheel, String name, long deadline) {
+        Probe probe = new Probe(name);
+        wheel.schedule(probe, deadline);
+        return probe;
+    }
+
+    private List<String> advance(TimerWheel wheel, long now) {
+        _expired.clear();
+        wheel.advance(now, _record);
+        return new ArrayList<>(_expired);
+    }
+
+    //timer must not be reported a millisecond early and must be reported exactly at its deadline
+    private void assertExpiresAt(TimerWheel wheel, String name, long deadline) {
+        assertEquals(name + " before deadline", Arrays.asList(), advance(wheel, deadline - 1));
+        assertEquals(name + " at deadline", Arrays.asList(name), advance(wheel, deadline));
+    }
+
+    @Test
+    public void emptyWheelHasNoWakeup() {
+        TimerWheel wheel = new TimerWheel(1000);
+        assertEquals(Long.MAX_VALUE, wheel.nextWakeup());
+        assertEquals(Arrays.asList(), advance(wheel, 5000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cascadesAcrossLevels() {
+        long now = 12345;
+        TimerWheel wheel = new TimerWheel(now);
+        long[] deltas = { 10, 255, 256, 300, 16383, 16384, 20000, 1 << 20, 2000000, 50000000 };
+        for(long delta : deltas)
+            schedule(wheel, "+" + delta, now + delta);
+        assertEquals(deltas.length, wheel.size());
+
+        for(long delta : deltas)
+            assertExpiresAt(wheel, "+" + delta, now + delta);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void timerBeyondWheelRangeIsCascadedAgain() {
+        TimerWheel wheel = new TimerWheel(0);
+        long deadline = 3L << 26; //a few wheel ranges ahead
+        schedule(wheel, "far", deadline);
+        assertExpiresAt(wheel, "far", deadline);
+    }
+
+    @Test
+    public void slotsWrapAround() {
+        long now = (1L << 20) - 5; //every level is at its last slot
+        TimerWheel wheel = new TimerWheel(now);
+        //same level 0 slot index as current millisecond, one turn ahead
+        schedule(wheel, "turn", now + 256);
+        //slot indices lower than current ones
+        schedule(wheel, "wrap0", now + 100);
+        schedule(wheel, "wrap1", now + 5000);
+        schedule(wheel, "wrap2", now + 300000);
+
+        assertExpiresAt(wheel, "wrap0", now + 100);
+        assertExpiresAt(wheel, "turn", now + 256);
+        assertExpiresAt(wheel, "wrap1", now + 5000);
+        assertExpiresAt(wheel, "wrap2", now + 300000);
+    }
+
+    @Test
+    public void sameMillisecondIsReportedTogether() {
+        TimerWheel wheel = new TimerWheel(0);
+        schedule(wheel, "a", 500);
+        schedule(wheel, "b", 499);
+        schedule(wheel, "c", 500);
+        assertEquals(Arrays.asList("b"), advance(wheel, 499));
+        List<String> expired = advance(wheel, 1000);
+        Collections.sort(expired);
+        assertEquals(Arrays.asList("a", "c"), expired);
+    }
+
+    @Test
+    public void overdueTimerExpiresOnNextAdvance() {
+        TimerWheel wheel = new TimerWheel(1000);
+        schedule(wheel, "late", 10);
+        assertEquals(Arrays.asList("late"), advance(wheel, 1000));
+    }
+
+    @Test
+    public void cancelledTimerIsNotReported() {
+        TimerWheel wheel = new TimerWheel(0);
+        Probe near = schedule(wheel, "near", 10);
+        Probe far = schedule(wheel, "far", 100000);
+        wheel.cancel(near);
+        wheel.cancel(far);
+        wheel.cancel(far);
+        assertEquals(0, wheel.size());
+        assertEquals(Arrays.asList(), advance(wheel, 200000));
+    }
+
+    @Test
+    public void callbackMayCancelOrReschedule() {
+        TimerWheel wheel = new TimerWheel(0);
+        Probe first = new Probe("first"), second = new Probe("second");
+        wheel.schedule(first, 10);
+        wheel.schedule(second, 10);
+        _expired.clear();
+        wheel.advance(10, timer -> {
+            _expired.add(((Probe)timer).name);
+            wheel.cancel(second);
+            wheel.schedule(first, 10); //goes to the next millisecond, not into slot being reported
+        });
+        assertEquals(Arrays.asList("second"), _expired);
+        assertExpiresAt(wheel, "first", 11);
+    }
+
+    @Test
+    public void nextWakeupIsExactOnLevel0() {
+        TimerWheel wheel = new TimerWheel(1000);
+        schedule(wheel, "a", 1200);
+        schedule(wheel, "b", 1100);
+        assertEquals(1100, wheel.nextWakeup());
+        advance(wheel, 1100);
+        assertEquals(1200, wheel.nextWakeup());
+    }
+
+    @Test
+    public void nextWakeupOfUpperLevelsIsNotLate() {
+        long now = 1000;
+        TimerWheel wheel = new TimerWheel(now);
+        long deadline = now + 20000;
+        schedule(wheel, "far", deadline);
+
+        //waking up at reported times only, timer is still reported exactly on time
+        long wakeups = 0;
+        for(long wakeup = wheel.nextWakeup(); wakeup != Long.MAX_VALUE; wakeup = wheel.nextWakeup()) {
+            assertTrue("wakeup " + wakeup + " is after deadline", wakeup <= deadline);
+            List<String> expired = advance(wheel, wakeup);
+            assertEquals(wakeup == deadline? Arrays.asList("far"): Arrays.asList(), expired);
+            ++wakeups;
+        }
+        assertTrue("woke up " + wakeups + " times", wakeups <= 3);
+        assertEquals(0, wheel.size());
+    }
+
+    //advance() stopped on level 1 boundary without cascading the slot holding the timer
+    @Test
+    public void nextWakeupIncludesSlotNotCascadedYet() {
+        TimerWheel wheel = new TimerWheel(0);
+        schedule(wheel, "far", 300);
+        schedule(wheel, "near", 10);
+        assertEquals(Arrays.asList("near"), advance(wheel, 255));
+
+        long wakeup = wheel.nextWakeup();
+        assertTrue("wakeup " + wakeup + " is after deadline", wakeup <= 300);
+        assertEquals(Arrays.asList(), advance(wheel, wakeup));
+        assertEquals(300, wheel.nextWakeup());
+        assertEquals(Arrays.asList("far"), advance(wheel, 300));
+    }
+
+    @Test
+    public void intervalDoesNotDrift() {
+        final int period = 16;
+        long start = 1000;
+        TimerWheel wheel = new TimerWheel(start);
+        Probe interval = schedule(wheel, "interval", start + period);
+
+        //script thread wakes up late by a varying amount, deadlines stay on the original grid
+        for(int i = 1; i <= 100; ++i) {
+            final long now = start + (long)i * period + (i % 5);
+            wheel.advance(now, timer -> {
+                assertEquals(0, (timer.deadline - start) % period);
+                wheel.schedule(timer, Timers.nextDeadline(timer.deadline, period, now));
+            });
+            assertEquals(start + (long)(i + 1) * period, interval.deadline);
+        }
+    }
+
+    @Test
+    public void missedIntervalTicksAreSkipped() {
+        assertEquals(1116, Timers.nextDeadline(1100, 16, 1110));
+        //stalled for several periods, next tick is the first grid point after now
+        assertEquals(1164, Timers.nextDeadline(1100, 16, 1150));
+        assertEquals(1148, Timers.nextDeadline(1100, 16, 1132));
+    }
+}